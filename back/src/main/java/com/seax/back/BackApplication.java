@@ -3,7 +3,10 @@ package com.seax.back;
 import com.seax.back.producer.CsvProducer;
 import com.seax.back.service.StaticDataBatchProcessor;
 import com.seax.back.service.TableCleanupService;
+import com.seax.back.service.VesselService;
+import com.seax.back.service.ZoneService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -21,6 +24,15 @@ public class BackApplication implements CommandLineRunner {
 	private TableCleanupService tableCleanupService;
 	@Autowired
 	StaticDataBatchProcessor staticDataBatchProcessor;
+	@Autowired
+	private VesselService vesselService;
+	@Autowired
+	private ZoneService zoneService;
+
+	//clean = wipe vessels + history and reload everything, replay nari_dynamic.csv from the start
+	//incremental = keep the tables, apply only changed static data, resume the replay where it stopped
+	@Value("${seax.startup.mode:clean}")
+	private String startupMode;
 
 	public static void main(String[] args) {
 		SpringApplication.run(BackApplication.class, args);
@@ -29,11 +41,24 @@ public class BackApplication implements CommandLineRunner {
 	@Override
 	public void run(String... args) {
 		System.out.println("🚀 SeaX Maritime Surveillance System Starting...");
-		//🧹STEP 0: Clean tables before starting
-		tableCleanupService.cleanAllTables();
+		boolean incremental = "incremental".equalsIgnoreCase(startupMode);
+		System.out.println("🚀 Startup mode: " + (incremental ? "incremental" : "clean"));
+		//🧹STEP 0: Clean tables before starting (clean mode only)
+		if (!incremental) {
+			tableCleanupService.cleanAllTables();
+		}
 		//PHASE 1: Load complete static vessel database
 		try {
-			staticDataBatchProcessor.loadAllStaticData();
+			if (incremental) {
+				//Tables and tracks are kept, only changed static data is applied
+				staticDataBatchProcessor.syncStaticData();
+			} else {
+				staticDataBatchProcessor.loadAllStaticData();
+			}
+			//Ingest and REST reads are served from memory from now on
+			vesselService.loadLiveState();
+			//Zones for the ingest-path violation check
+			zoneService.loadZoneRegistry();
 			System.out.println(":) Static vessel database ready!");
 		} catch (Exception e) {
 			System.err.println("CRITICAL ERROR: Failed to load static vessel data");
@@ -43,7 +68,7 @@ public class BackApplication implements CommandLineRunner {
 		//PHASE 2: Start dynamic streaming
 		System.out.println("PHASE 2: Starting Dynamic AIS Stream");
 		new Thread(() -> {
-			csvProducer.produceCsvData();
+			csvProducer.produceCsvData(incremental);
 		}).start();
 
 		System.out.println(":) Maritime surveillance system ready!");
@@ -17,6 +17,8 @@ public class CorsConfig {
         cfg.addAllowedOrigin("http://localhost:3000");
         cfg.addAllowedHeader("*");
         cfg.addAllowedMethod("*");
+        //The map reads the version of /api/vessels/positions/changes from it
+        cfg.addExposedHeader("ETag");
 
         UrlBasedCorsConfigurationSource src = new UrlBasedCorsConfigurationSource();
         // this covers /actuator/** as well as your own controllers
@@ -0,0 +1,129 @@
+package com.seax.back.config;
+
+import com.seax.back.model.AisData;
+import com.seax.back.serialization.AisDataDeserializer;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+public class KafkaConsumerConfig {
+
+    @Value("${spring.kafka.bootstrap-servers}")
+    private String bootstrapServers;
+
+    //Upper bound of records handed to one batch listener call (one poll)
+    @Value("${seax.ingest.batch.max-size:500}")
+    private int maxBatchSize;
+
+    //How long the broker may hold a fetch to fill up a batch
+    @Value("${seax.ingest.batch.max-wait-ms:250}")
+    private int maxBatchWaitMs;
+
+    //Broker answers the fetch as soon as this many bytes are ready (or max-wait-ms expires)
+    @Value("${seax.ingest.batch.min-bytes:65536}")
+    private int minBatchBytes;
+
+    //Partitions of ais-data. Records are keyed by MMSI, so one vessel always maps to one partition
+    @Value("${seax.kafka.ais-data.partitions:6}")
+    private int aisDataPartitions;
+
+    //Listener threads per container. Each partition is owned by exactly one thread at a time,
+    //which keeps the reports of a vessel in order. More threads than partitions stay idle
+    @Value("${seax.ingest.concurrency:3}")
+    private int listenerConcurrency;
+
+    //Cluster fan-out topic (ClusterRelay): every node reads all of it, so partitions only spread the load
+    @Value("${seax.cluster.fanout.topic:seax-ws-relay}")
+    private String relayTopic;
+
+    @Value("${seax.cluster.fanout.partitions:3}")
+    private int relayPartitions;
+
+    //Created (or grown) on startup by Spring's KafkaAdmin
+    @Bean
+    public NewTopic aisDataTopic() {
+        return TopicBuilder.name("ais-data")
+                .partitions(aisDataPartitions)
+                .replicas(1)
+                .build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "seax.cluster.fanout.enabled", havingValue = "true")
+    public NewTopic relayTopic() {
+        return TopicBuilder.name(relayTopic)
+                .partitions(relayPartitions)
+                .replicas(1)
+                .build();
+    }
+
+    @Bean
+    public ConsumerFactory<String, AisData> consumerFactory() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, "seax-group");
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        //Reads both the binary and the json wire format. A record that cannot be decoded
+        //reaches the listener as a null value instead of failing the whole poll
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
+        props.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, AisDataDeserializer.class);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxBatchSize);
+        props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, maxBatchWaitMs);
+        props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, minBatchBytes);
+        return new DefaultKafkaConsumerFactory<>(props);
+    }
+
+    //Record-at-a-time listeners (default factory name used by @KafkaListener)
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, AisData> kafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, AisData> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        factory.setConcurrency(listenerConcurrency);
+        return factory;
+    }
+
+    //Batch listeners: the whole poll is delivered as one List
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, AisData> aisBatchListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, AisData> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        factory.setConcurrency(listenerConcurrency);
+        factory.setBatchListener(true);
+        return factory;
+    }
+
+    //Cluster relay envelopes (JSON strings). The group id is set per node on the listener;
+    //the listener seeks to the end on assignment, so offsets only matter within one run
+    @Bean
+    public ConsumerFactory<String, String> relayConsumerFactory() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        return new DefaultKafkaConsumerFactory<>(props);
+    }
+
+    //One thread: relay traffic is small (one envelope per node per broadcast window)
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> relayListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(relayConsumerFactory());
+        factory.setConcurrency(1);
+        return factory;
+    }
+}
@@ -1,5 +1,7 @@
 package com.seax.back.config;
 
+import com.seax.back.model.AisData;
+import com.seax.back.serialization.AisDataSerializer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
@@ -18,17 +20,40 @@ public class KafkaProducerConfig {
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
 
+    //Wire format of the ais-data topic: binary (compact) or json (readable, for debugging)
+    @Value("${seax.kafka.ais-data.format:binary}")
+    private String aisDataFormat;
+
     @Bean
-    public ProducerFactory<String, String> producerFactory() {
+    public ProducerFactory<String, AisData> producerFactory() {
         Map<String, Object> props = new HashMap<>();
         props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, AisDataSerializer.class);
+        //Format is chosen per topic, add one entry per AisData topic
+        props.put(AisDataSerializer.FORMAT_CONFIG_PREFIX + "ais-data", aisDataFormat);
         return new DefaultKafkaProducerFactory<>(props);
     }
 
     @Bean
-    public KafkaTemplate<String, String> kafkaTemplate() {
+    public KafkaTemplate<String, AisData> kafkaTemplate() {
         return new KafkaTemplate<>(producerFactory());
     }
+
+    //Cluster relay envelopes (ClusterRelay), plain JSON strings
+    @Bean
+    public ProducerFactory<String, String> relayProducerFactory() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        //A short linger batches the envelopes of one broadcast window
+        props.put(ProducerConfig.LINGER_MS_CONFIG, 5);
+        return new DefaultKafkaProducerFactory<>(props);
+    }
+
+    @Bean
+    public KafkaTemplate<String, String> relayKafkaTemplate() {
+        return new KafkaTemplate<>(relayProducerFactory());
+    }
 }
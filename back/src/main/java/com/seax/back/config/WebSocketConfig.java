@@ -1,14 +1,33 @@
 package com.seax.back.config;
 
+import com.seax.back.service.WebSocketSessionTracker;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+
+    private final WebSocketSessionTracker sessionTracker;
+
+    //A session whose socket write takes longer than this is closed
+    @Value("${seax.websocket.transport.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+
+    //Bytes buffered for a session while a previous write is still in progress; above it the session is closed
+    @Value("${seax.websocket.transport.send-buffer-size-limit:4194304}")
+    private int sendBufferSizeLimit;
+
+    public WebSocketConfig(WebSocketSessionTracker sessionTracker) {
+        this.sessionTracker = sessionTracker;
+    }
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry
@@ -21,7 +40,32 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     public void configureMessageBroker(MessageBrokerRegistry registry) {
         registry
                 .setApplicationDestinationPrefixes("/app")
-                .enableSimpleBroker("/topic");
+                .enableSimpleBroker("/topic", "/queue");
+        //Viewport-scoped live updates are sent to /user/queue/... of one session
+        registry.setUserDestinationPrefix("/user");
+        //The outbound channel is a thread pool: without this, two frames of one session may be written in either
+        //order, and a delta can overtake the snapshot of the vessel it refers to (PositionDeltaEncoder)
+        registry.setPreservePublishOrder(true);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration
+                .setSendTimeLimit(sendTimeLimitMs)
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                //Keeps the session handles, so LivePositionBroadcaster can close a slow session
+                .addDecoratorFactory(sessionTracker);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        //Tracks which sessions are subscribed to their live frames (/user/queue/ais-data)
+        registration.interceptors(sessionTracker);
     }
-}
 
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        //Counts the live frames every session got through the outbound channel (frames in flight per session)
+        registration.interceptors(sessionTracker);
+    }
+}
@@ -1,19 +1,19 @@
 package com.seax.back.consumer;
 
-//Jackson utility (from com.fasterxml.jackson.databind) knows how to map JSON to Java classes.
-
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.seax.back.controller.AisWebSocketController;
 import com.seax.back.model.AisData;
 import com.seax.back.model.Vessel;
-import com.seax.back.repository.VesselRepository;
+import com.seax.back.service.LiveVesselStore;
 import com.seax.back.service.StaticDataBatchProcessor;
 import com.seax.back.service.VesselService;
+import com.seax.back.service.ViolationService;
 import jakarta.annotation.PostConstruct;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -21,10 +21,9 @@ import java.util.Optional;
 public class AisDataConsumer {
 
     private final AisWebSocketController webSocketController;
-    private final ObjectMapper objectMapper;
     private final VesselService vesselService;
     private final StaticDataBatchProcessor staticDataBatchProcessor;
-    private final VesselRepository vesselRepository;
+    private final ViolationService violationService;
 
 
     //Cache country codes for performance (load once, use many times)
@@ -32,13 +31,13 @@ public class AisDataConsumer {
 
 
     public AisDataConsumer(AisWebSocketController webSocketController,
-                           ObjectMapper objectMapper, VesselService vesselService, StaticDataBatchProcessor staticDataBatchProcessor, VesselRepository vesselRepository) {
+                           VesselService vesselService, StaticDataBatchProcessor staticDataBatchProcessor,
+                           ViolationService violationService) {
 
         this.webSocketController = webSocketController;
-        this.objectMapper = objectMapper;
         this.vesselService = vesselService;
         this.staticDataBatchProcessor = staticDataBatchProcessor;
-        this.vesselRepository = vesselRepository;
+        this.violationService = violationService;
     }
 
     @PostConstruct
@@ -59,13 +58,13 @@ public class AisDataConsumer {
 
 
     //Whenever a message is published to topic ais-data, call this method and pass the message
-    @KafkaListener(topics = "ais-data", groupId = "seax-group")
-    public void consume(String message) {
+    //Only active when batch mode is disabled (seax.ingest.batch.enabled=false)
+    //The message is already decoded (binary or JSON) by AisDataDeserializer
+    @KafkaListener(topics = "ais-data", groupId = "seax-group",
+            autoStartup = "#{!${seax.ingest.batch.enabled:true}}")
+    public void consume(AisData data) {
 
-        System.out.println("🔍 RAW MESSAGE RECEIVED: " + message);
         try {
-            //converts a JSON string into a Java object
-            AisData data = objectMapper.readValue(message, AisData.class);
             System.out.println(":) Received AisData:");
             System.out.println("MMSI: " + data.getSourcemmsi());
             System.out.println("Lat: " + data.getLat() + ", Lon: " + data.getLon());
@@ -76,16 +75,16 @@ public class AisDataConsumer {
             System.out.println("Navigationalstatus: " + data.getNavigationalstatus());
             System.out.println("Rateofturn: " + data.getRateofturn());
 
-            //Check if vessel belongs to table "vessels"
+            //Check if vessel belongs to the live vessel state (mirror of table "vessels")
             Optional<Vessel> vesselOpt = vesselService.getVesselByMmsi(data.getSourcemmsi());
             Vessel vessel;
             if (!vesselOpt.isPresent()) {
                 //Vessel not found - make one, with default static data
                 System.out.println("XXX Vessel NOT FOUND in database!" + data.getSourcemmsi());
                 vessel = createUnknownVessel(data.getSourcemmsi());
-                //Save the new vessel.
+                //Save the new vessel (live state now, vessels table on the next write-behind flush)
                 try {
-                    vesselRepository.save(vessel);
+                    vessel = vesselService.addLiveVessel(vessel);
                     System.out.println(":) Created new vessel with MMSI: " + data.getSourcemmsi());
                 } catch (Exception e) {
                     System.err.println("XXX Failed to save new vessel: " + e.getMessage());
@@ -95,6 +94,12 @@ public class AisDataConsumer {
                 vessel = vesselOpt.get();
             }
 
+            //Older than the position we already hold (redelivery, rebalance): do not move the vessel back
+            if (LiveVesselStore.isStale(vessel, data)) {
+                System.out.println("⏪ Skipping stale report for MMSI: " + data.getSourcemmsi());
+                return;
+            }
+
             //Update vessel position (for both existing and new vessels)
             try {
                 //Update vessel position if exists or not
@@ -108,15 +113,80 @@ public class AisDataConsumer {
             } catch (Exception e) {
                 System.err.println("XXX FAILED to update position for MMSI: " + data.getSourcemmsi());
             }
+            //Zone check on the new position (incremental violation mode)
+            checkViolations(vesselService.getVesselByMmsi(data.getSourcemmsi()).orElse(null));
             //Send to WebSocket clients
             webSocketController.sendAisUpdate(data);
 
         } catch (Exception e) {
-            System.err.println("XXX FAILED to parse Kafka message: " + message);
+            System.err.println("XXX FAILED to process Kafka message: " + data);
             e.printStackTrace();
         }
     }
 
+    //Batch mode: one call per poll, one MMSI lookup query and one transaction for the whole batch
+    @KafkaListener(topics = "ais-data", groupId = "seax-group",
+            containerFactory = "aisBatchListenerContainerFactory",
+            autoStartup = "${seax.ingest.batch.enabled:true}")
+    public void consumeBatch(List<AisData> messages) {
+        List<AisData> batch = new ArrayList<>(messages.size());
+        for (AisData message : messages) {
+            //null = record that could not be decoded (ErrorHandlingDeserializer)
+            if (message != null) {
+                batch.add(message);
+            } else {
+                System.err.println("XXX FAILED to parse Kafka message, skipping it");
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Vessel> vessels;
+        try {
+            //Unknown MMSIs get a default vessel inside the same transaction
+            vessels = vesselService.updateVesselPositions(batch, this::createUnknownVessel);
+        } catch (Exception e) {
+            System.err.println("XXX FAILED to update positions for batch of " + batch.size() + " messages: " + e.getMessage());
+            return;
+        }
+
+        for (AisData data : batch) {
+            Vessel vessel = vessels.get(data.getSourcemmsi());
+            //An older report than the vessel's current position is history only, not broadcast
+            if (vessel != null && LiveVesselStore.isStale(vessel, data)) {
+                continue;
+            }
+            if (vessel != null) {
+                data.setName(vessel.getName());
+                data.setType(vessel.getType());
+                data.setCountry(vessel.getCountry());
+                data.setImo(vessel.getImo());
+                data.setCallsign(vessel.getCallsign());
+            }
+            //Send to WebSocket clients
+            webSocketController.sendAisUpdate(data);
+        }
+
+        //Zone check once per vessel, on its latest position in this batch (incremental violation mode)
+        for (Vessel vessel : vessels.values()) {
+            checkViolations(vessel);
+        }
+        System.out.println("📍 Updated positions for batch of " + batch.size() + " messages (" + vessels.size() + " vessels)");
+    }
+
+    //A failing check must never stop the ingest of the batch
+    private void checkViolations(Vessel vessel) {
+        if (!violationService.isIncremental()) {
+            return;
+        }
+        try {
+            violationService.checkPosition(vessel);
+        } catch (Exception e) {
+            System.err.println("XXX FAILED to check violations for MMSI: " + (vessel != null ? vessel.getMmsi() : null) + ": " + e.getMessage());
+        }
+    }
+
     private String extractCountryFromMmsi(Long mmsi) {
         try {
             String mmsiStr = mmsi.toString();
@@ -0,0 +1,90 @@
+package com.seax.back.consumer;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seax.back.model.AisData;
+import com.seax.back.model.RelayEnvelope;
+import com.seax.back.service.ClusterRelay;
+import com.seax.back.service.LivePositionBroadcaster;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Receiving side of the cluster fan-out (see ClusterRelay): delivers what other nodes broadcast
+//to the WebSocket sessions connected to this node
+@Service
+public class ClusterRelayConsumer implements ConsumerSeekAware {
+
+    private static final TypeReference<List<AisData>> AIS_DATA_LIST = new TypeReference<>() {
+    };
+
+    private final ClusterRelay clusterRelay;
+    private final LivePositionBroadcaster broadcaster;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    //Partitions assigned to this node since it started
+    private final Set<TopicPartition> seenPartitions = ConcurrentHashMap.newKeySet();
+
+    public ClusterRelayConsumer(ClusterRelay clusterRelay, LivePositionBroadcaster broadcaster,
+                                SimpMessagingTemplate messagingTemplate, ObjectMapper objectMapper) {
+        this.clusterRelay = clusterRelay;
+        this.broadcaster = broadcaster;
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    //A consumer group per node: every node reads every envelope, whatever the ais-data partitions it owns
+    @KafkaListener(topics = "${seax.cluster.fanout.topic:seax-ws-relay}",
+            groupId = "seax-relay-#{@clusterRelay.nodeId}",
+            containerFactory = "relayListenerContainerFactory",
+            autoStartup = "${seax.cluster.fanout.enabled:false}")
+    public void consume(String value) {
+        try {
+            RelayEnvelope envelope = objectMapper.readValue(value, RelayEnvelope.class);
+            if (clusterRelay.accept(envelope)) {
+                deliver(envelope);
+            }
+        } catch (Exception e) {
+            System.err.println("XXX FAILED to deliver relayed message: " + e.getMessage());
+        }
+    }
+
+    void deliver(RelayEnvelope envelope) throws Exception {
+        if (RelayEnvelope.POSITIONS.equals(envelope.getKind())) {
+            //Into the next broadcast window of this node (global feed and viewport sessions)
+            broadcaster.publishRelayed(objectMapper.readValue(envelope.getPayload(), AIS_DATA_LIST));
+        } else if (RelayEnvelope.MESSAGE.equals(envelope.getKind()) && envelope.getDestination() != null) {
+            //Already JSON: sent as is
+            messagingTemplate.convertAndSend(envelope.getDestination(),
+                    envelope.getPayload().getBytes(StandardCharsets.UTF_8),
+                    Map.<String, Object>of(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_JSON));
+        }
+    }
+
+    //Live traffic only: a (re)started node does not replay what was relayed while it was away.
+    //Only on the first assignment of a partition: after a rebalance the committed offsets are resumed,
+    //so the envelopes relayed during the rebalance are still delivered.
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        List<TopicPartition> firstAssigned = new ArrayList<>();
+        for (TopicPartition partition : assignments.keySet()) {
+            if (seenPartitions.add(partition)) {
+                firstAssigned.add(partition);
+            }
+        }
+        if (!firstAssigned.isEmpty()) {
+            callback.seekToEnd(firstAssigned);
+        }
+    }
+}
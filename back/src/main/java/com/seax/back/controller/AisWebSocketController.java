@@ -1,18 +1,48 @@
 package com.seax.back.controller;
 
 import com.seax.back.model.AisData;
+import com.seax.back.model.Viewport;
+import com.seax.back.service.LivePositionBroadcaster;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 
 @Controller
 public class AisWebSocketController {
-    private final SimpMessagingTemplate template;
+    private final LivePositionBroadcaster broadcaster;
+
     @Autowired
-    public AisWebSocketController(SimpMessagingTemplate template) {
-        this.template = template;
+    public AisWebSocketController(LivePositionBroadcaster broadcaster) {
+        this.broadcaster = broadcaster;
     }
+
+    //Queued for the next broadcast window (one batched frame per destination)
     public void sendAisUpdate(AisData data) {
-        template.convertAndSend("/topic/ais-data", data);
+        broadcaster.publish(data);
+    }
+
+    //STOMP SEND /app/viewport {south, west, north, east}, again on every map move
+    @MessageMapping("/viewport")
+    public void updateViewport(@Payload Viewport viewport, @Header("simpSessionId") String sessionId) {
+        try {
+            broadcaster.updateViewport(sessionId, viewport);
+        } catch (IllegalArgumentException e) {
+            System.err.println("XXX Ignoring viewport of session " + sessionId + ": " + e.getMessage());
+        }
+    }
+
+    //STOMP SEND /app/resync: the client dropped its vessel state, start over from a snapshot of its viewport
+    @MessageMapping("/resync")
+    public void resync(@Header("simpSessionId") String sessionId) {
+        broadcaster.resync(sessionId);
+    }
+
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        broadcaster.sessionClosed(event.getSessionId());
     }
-}
\ No newline at end of file
+}
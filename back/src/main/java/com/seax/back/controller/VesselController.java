@@ -1,12 +1,20 @@
 package com.seax.back.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.seax.back.model.Vessel;
 import com.seax.back.model.VesselPositionHistory;
+import com.seax.back.service.FleetMembershipCache;
 import com.seax.back.service.JwtService;
+import com.seax.back.service.LiveVesselStore;
 import com.seax.back.service.VesselService;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 
 @RestController
@@ -17,9 +25,17 @@ public class VesselController {
 
     private final JwtService jwtService;
 
-    public VesselController(VesselService vesselService, JwtService jwtService) {
+    //Spring's configured mapper, only its JsonFactory is used (streamed vessel list)
+    private final ObjectMapper objectMapper;
+
+    //Page size of GET /api/vessels?limit=...
+    private static final int DEFAULT_PAGE_SIZE = 500;
+    private static final int MAX_PAGE_SIZE = 5000;
+
+    public VesselController(VesselService vesselService, JwtService jwtService, ObjectMapper objectMapper) {
         this.vesselService = vesselService;
         this.jwtService = jwtService;
+        this.objectMapper = objectMapper;
     }
 
     //Helper method to reduce duplication
@@ -83,27 +99,13 @@ public class VesselController {
             Long userId = extractUserIdFromAuth(authHeader);
             //Take the vessels in this area
             List<Vessel> vessels = vesselService.getVesselsInArea(startX, startY, endX, endY);
+            //Resolved once for the whole response
+            FleetMembershipCache.Fleet fleet = vesselService.getFleetMembership(userId);
 
             //Create response with required fields
             List<Map<String, Object>> response = new ArrayList<>();
             for (Vessel vessel : vessels) {
-                Map<String, Object> vesselData = new HashMap<>();
-                vesselData.put("mmsi", vessel.getMmsi());
-                vesselData.put("name", vessel.getName());
-                vesselData.put("latitude", vessel.getLatitude());
-                vesselData.put("longitude", vessel.getLongitude());
-                vesselData.put("heading", vessel.getHeading());
-                vesselData.put("type", vessel.getType());
-                vesselData.put("country", vessel.getCountry());
-                vesselData.put("status", vessel.getStatus());
-                vesselData.put("speed", vessel.getSpeedOverGround());
-
-                //Add isInFleet if user is logged in
-                if (userId != null) {
-                    boolean inFleet = vesselService.isVesselInUserFleet(vessel.getMmsi(), userId);
-                    vesselData.put("isInFleet", inFleet);
-                }
-                response.add(vesselData);
+                response.add(positionData(vessel, userId != null, fleet));
             }
 
             return ResponseEntity.ok(response);
@@ -117,6 +119,138 @@ public class VesselController {
         }
     }
 
+    //PUBLIC - Changes of a map area since the client's last poll
+    //GET /api/vessels/positions/changes?start={x,y}&end={x,y}&since={version}
+    //The version can also come as If-None-Match (the ETag of the previous answer).
+    //Answer: {version, full, vessels: [added or moved], removed: [mmsi]}; full = true means "replace everything"
+    //(first call, or the client is too far behind). 304 when nothing changed in the area.
+    @GetMapping("/vessels/positions/changes")
+    public ResponseEntity<?> getVesselChangesInArea(
+            @RequestParam String start,
+            @RequestParam String end,
+            @RequestParam(required = false) Long since,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch,
+            @RequestHeader(value = "Authorization", required = false) String authHeader) {
+
+        try {
+            String[] startCoords = start.split(",");
+            String[] endCoords = end.split(",");
+
+            if (startCoords.length != 2 || endCoords.length != 2) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "Invalid coordinate format. Use: x,y"));
+            }
+
+            double startX = Double.parseDouble(startCoords[0]);
+            double startY = Double.parseDouble(startCoords[1]);
+            double endX = Double.parseDouble(endCoords[0]);
+            double endY = Double.parseDouble(endCoords[1]);
+
+            Long sinceVersion = since != null ? since : versionFromETag(ifNoneMatch);
+            LiveVesselStore.AreaDelta delta = vesselService.getVesselChangesInArea(startX, startY, endX, endY, sinceVersion);
+            String eTag = "\"" + delta.version() + "\"";
+
+            //Idle view: headers only. The new ETag moves the client past changes made elsewhere on the map
+            if (!delta.full() && delta.upserted().isEmpty() && delta.removed().isEmpty()) {
+                return ResponseEntity.status(304).eTag(eTag).build();
+            }
+
+            Long userId = extractUserIdFromAuth(authHeader);
+            FleetMembershipCache.Fleet fleet = vesselService.getFleetMembership(userId);
+            List<Map<String, Object>> vessels = new ArrayList<>();
+            for (Vessel vessel : delta.upserted()) {
+                vessels.add(positionData(vessel, userId != null, fleet));
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("version", delta.version());
+            response.put("full", delta.full());
+            response.put("vessels", vessels);
+            response.put("removed", delta.removed());
+            return ResponseEntity.ok().eTag(eTag).body(response);
+
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Invalid coordinate format. Use numeric values."));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", "Server error: " + e.getMessage()));
+        }
+    }
+
+    //PUBLIC - One map tile (Web Mercator z/x/y)
+    //GET /api/vessels/tiles/{z}/{x}/{y}
+    //Zoomed out: {clusters: [{latitude, longitude, count, dominantType}]}, at most 64 per tile
+    //Zoomed in (seax.tiles.vessel-min-zoom): {vessels: [...]} with the fields of /vessels/positions
+    @GetMapping("/vessels/tiles/{z}/{x}/{y}")
+    public ResponseEntity<?> getVesselTile(
+            @PathVariable int z,
+            @PathVariable int x,
+            @PathVariable int y,
+            @RequestHeader(value = "Authorization", required = false) String authHeader) {
+
+        VesselService.VesselTile tile;
+        try {
+            tile = vesselService.getVesselTile(z, x, y);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("z", z);
+        response.put("x", x);
+        response.put("y", y);
+        if (tile.clustered()) {
+            response.put("clusters", tile.clusters());
+        } else {
+            Long userId = extractUserIdFromAuth(authHeader);
+            FleetMembershipCache.Fleet fleet = vesselService.getFleetMembership(userId);
+            List<Map<String, Object>> vessels = new ArrayList<>();
+            for (Vessel vessel : tile.vessels()) {
+                vessels.add(positionData(vessel, userId != null, fleet));
+            }
+            response.put("vessels", vessels);
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    //"123", W/"123" -> 123; anything else -> null (full answer)
+    private static Long versionFromETag(String eTag) {
+        if (eTag == null) {
+            return null;
+        }
+        String value = eTag.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        value = value.replace("\"", "");
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    //Fields of the map endpoints (positions and position changes)
+    private Map<String, Object> positionData(Vessel vessel, boolean withFleet, FleetMembershipCache.Fleet fleet) {
+        Map<String, Object> vesselData = new HashMap<>();
+        vesselData.put("mmsi", vessel.getMmsi());
+        vesselData.put("name", vessel.getName());
+        vesselData.put("latitude", vessel.getLatitude());
+        vesselData.put("longitude", vessel.getLongitude());
+        vesselData.put("heading", vessel.getHeading());
+        vesselData.put("type", vessel.getType());
+        vesselData.put("country", vessel.getCountry());
+        vesselData.put("status", vessel.getStatus());
+        vesselData.put("speed", vessel.getSpeedOverGround());
+
+        //Add isInFleet if user is logged in
+        if (withFleet) {
+            vesselData.put("isInFleet", fleet.contains(vessel.getMmsi()));
+        }
+        return vesselData;
+    }
+
     //PUBLIC - Get vessel by MMSI
     //GET /api/vessels?id={mmsi}
     @GetMapping("/vessels/{id}")
@@ -165,9 +299,12 @@ public class VesselController {
 
     /*Check RETURN name*/
     //PUBLIC - Get all vessels (basic info) (all vessels SORTED!)
-    //GET /api/vessels (when no id parameter)
+    //GET /api/vessels (when no id parameter): the whole list, streamed as it is read
+    //GET /api/vessels?limit={n}&cursor={nextCursor}: one page, keyset pagination on (name, mmsi)
     @GetMapping("/vessels")
     public ResponseEntity<?> getAllVessels(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
             @RequestHeader(value = "Authorization", required = false) String authHeader) {
 
         //Get user ID if token provided
@@ -175,33 +312,88 @@ public class VesselController {
         if (authHeader != null && jwtService.isTokenValid(authHeader)) {
             userId = jwtService.getUserIdFromToken(authHeader);
         }
+        boolean withFleet = userId != null;
+        //Resolved once for the whole response
+        FleetMembershipCache.Fleet fleet = vesselService.getFleetMembership(userId);
+
+        if (cursor == null && limit == null) {
+            //Same JSON array as before, written vessel by vessel: memory use does not grow with the fleet
+            StreamingResponseBody body = outputStream -> {
+                try (JsonGenerator json = objectMapper.getFactory().createGenerator(outputStream)) {
+                    json.writeStartArray();
+                    vesselService.forEachVesselByName(vessel -> writeBasicVessel(json, vessel, withFleet, fleet));
+                    json.writeEndArray();
+                }
+            };
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+        }
 
-        List<Vessel> vessels = vesselService.getAllVessels();
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<Vessel> page;
+        try {
+            //One extra vessel tells whether there is a next page
+            page = vesselService.getVesselsPage(cursor, pageSize + 1);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        boolean hasMore = page.size() > pageSize;
+        if (hasMore) {
+            page = page.subList(0, pageSize);
+        }
 
         //Create response with basic fields
-        List<Map<String, Object>> response = new ArrayList<>();
-        for (Vessel vessel : vessels) {
-            Map<String, Object> vesselData = new HashMap<>();
-            vesselData.put("mmsi", vessel.getMmsi());
-            vesselData.put("name", vessel.getName());
-            vesselData.put("type", vessel.getType());
-            vesselData.put("country", vessel.getCountry());
+        List<Map<String, Object>> vessels = new ArrayList<>();
+        for (Vessel vessel : page) {
+            vessels.add(basicVesselData(vessel, withFleet, fleet));
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("vessels", vessels);
+        response.put("nextCursor", hasMore ? LiveVesselStore.NameKey.of(page.get(page.size() - 1)).toCursor() : null);
 
-            //Add position if available
-            if (vessel.getLatitude() != null && vessel.getLongitude() != null) {
-                vesselData.put("latitude", vessel.getLatitude());
-                vesselData.put("longitude", vessel.getLongitude());
-            }
+        return ResponseEntity.ok(response);
+    }
 
-            //Add isInFleet if user is logged in
-            if (userId != null) {
-                vesselData.put("isInFleet", vesselService.isVesselInUserFleet(vessel.getMmsi(), userId));
-            }
+    //Basic fields of the vessel list
+    private Map<String, Object> basicVesselData(Vessel vessel, boolean withFleet, FleetMembershipCache.Fleet fleet) {
+        Map<String, Object> vesselData = new HashMap<>();
+        vesselData.put("mmsi", vessel.getMmsi());
+        vesselData.put("name", vessel.getName());
+        vesselData.put("type", vessel.getType());
+        vesselData.put("country", vessel.getCountry());
+
+        //Add position if available
+        if (vessel.getLatitude() != null && vessel.getLongitude() != null) {
+            vesselData.put("latitude", vessel.getLatitude());
+            vesselData.put("longitude", vessel.getLongitude());
+        }
 
-            response.add(vesselData);
+        //Add isInFleet if user is logged in
+        if (withFleet) {
+            vesselData.put("isInFleet", fleet.contains(vessel.getMmsi()));
         }
+        return vesselData;
+    }
 
-        return ResponseEntity.ok(response);
+    //Same fields as basicVesselData, written straight to the response
+    private void writeBasicVessel(JsonGenerator json, Vessel vessel, boolean withFleet, FleetMembershipCache.Fleet fleet) {
+        try {
+            json.writeStartObject();
+            json.writeNumberField("mmsi", vessel.getMmsi());
+            json.writeStringField("name", vessel.getName());
+            json.writeStringField("type", vessel.getType());
+            json.writeStringField("country", vessel.getCountry());
+            if (vessel.getLatitude() != null && vessel.getLongitude() != null) {
+                json.writeNumberField("latitude", vessel.getLatitude());
+                json.writeNumberField("longitude", vessel.getLongitude());
+            }
+            if (withFleet) {
+                json.writeBooleanField("isInFleet", fleet.contains(vessel.getMmsi()));
+            }
+            json.writeEndObject();
+        } catch (IOException e) {
+            //Client went away: stop the iteration
+            throw new UncheckedIOException(e);
+        }
     }
 
     //PRIVATE - Get user's fleet
@@ -260,7 +452,8 @@ public class VesselController {
         }
 
         try {
-            Optional<Vessel> vesselOpt = vesselService.getVesselByMmsi(mmsi);
+            //Private copy: the live snapshot itself must not be modified
+            Optional<Vessel> vesselOpt = vesselService.getVesselForUpdate(mmsi);
 
             if (vesselOpt.isPresent()) {
                 Vessel vessel = vesselOpt.get();
@@ -379,6 +572,8 @@ public class VesselController {
         try {
             Long userId = extractUserIdFromAuth(authHeader);
             List<Vessel> vessels = vesselService.searchVessels(query.trim());
+            //Resolved once for the whole response
+            FleetMembershipCache.Fleet fleet = vesselService.getFleetMembership(userId);
 
             //Create response with basic vessel info
             List<Map<String, Object>> response = new ArrayList<>();
@@ -396,7 +591,7 @@ public class VesselController {
 
                 //Add isInFleet if user is logged in
                 if (userId != null) {
-                    vesselData.put("isInFleet", vesselService.isVesselInUserFleet(vessel.getMmsi(), userId));
+                    vesselData.put("isInFleet", fleet.contains(vessel.getMmsi()));
                 }
 
                 response.add(vesselData);
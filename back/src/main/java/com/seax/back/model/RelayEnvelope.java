@@ -0,0 +1,22 @@
+package com.seax.back.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+//One message of the cluster relay topic (seax.cluster.fanout), JSON on the wire
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RelayEnvelope {
+    //payload = JSON array of AisData, delivered to the LivePositionBroadcaster of every other node
+    public static final String POSITIONS = "positions";
+    //payload = JSON body, sent as is to the STOMP destination on every other node
+    public static final String MESSAGE = "message";
+
+    private String id;          //unique per message (origin node + start + sequence), de-duplication key
+    private String origin;      //node id of the sender; a node skips its own messages
+    private String kind;        //POSITIONS or MESSAGE
+    private String destination; //MESSAGE only
+    private String payload;
+}
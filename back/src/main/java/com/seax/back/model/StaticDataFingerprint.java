@@ -0,0 +1,28 @@
+package com.seax.back.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+//SHA-256 of a static data file (vessel_types.csv, nari_static.csv, MMSI_Country_Codes.csv) as of the last load
+@Entity
+@Table(name = "static_data_fingerprints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StaticDataFingerprint {
+
+    @Id
+    private String fileName;
+
+    @Column(length = 64)
+    private String sha256;
+
+    private LocalDateTime loadedAt;
+}
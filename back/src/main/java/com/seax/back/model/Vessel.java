@@ -37,6 +37,24 @@ public class Vessel {
         this.vesselType = vesselType;
     }
 
+    //Detached field-by-field copy (the live state store swaps copies instead of mutating shared objects)
+    public Vessel copy() {
+        Vessel copy = new Vessel(mmsi, vesselType);
+        copy.setCountry(country);
+        copy.setName(name);
+        copy.setImo(imo);
+        copy.setCallsign(callsign);
+        copy.setNavigationalStatus(navigationalStatus);
+        copy.setRateOfTurn(rateOfTurn);
+        copy.setSpeedOverGround(speedOverGround);
+        copy.setCourseOverGround(courseOverGround);
+        copy.setTrueHeading(trueHeading);
+        copy.setLongitude(longitude);
+        copy.setLatitude(latitude);
+        copy.setTimestamp(timestamp);
+        return copy;
+    }
+
     //API-friendly getters (computed fields)
     public String getType() {
         return vesselType != null ? vesselType : "unknown";
@@ -0,0 +1,17 @@
+package com.seax.back.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+//Map bounding box a WebSocket client sends to /app/viewport (Leaflet getBounds() order)
+//west > east = the box crosses the antimeridian
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Viewport {
+    private double south;
+    private double west;
+    private double north;
+    private double east;
+}
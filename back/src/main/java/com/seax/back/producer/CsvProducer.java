@@ -1,94 +1,173 @@
-
 package com.seax.back.producer;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.opencsv.CSVReader;
 import com.seax.back.model.AisData;
+import jakarta.annotation.PostConstruct;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
 
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
 
 @Component
 public class CsvProducer {
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    //Jackson is a Java library for converting between: Java Objects ⇄ JSON
-    private final ObjectMapper mapper;
-    private static final long PROCESSING_BUFFER_MS = 50;
+    //Values are encoded by AisDataSerializer (binary or JSON, see seax.kafka.ais-data.format)
+    private final KafkaTemplate<String, AisData> kafkaTemplate;
+    //Only used to read the last records of ais-data when resuming
+    private final ConsumerFactory<String, AisData> consumerFactory;
+
+    //Replay speed: 1 = real time, 10, 100, ... or "max" for as fast as possible
+    @Value("${seax.replay.speed:1}")
+    private String replaySpeed;
 
-    public CsvProducer(KafkaTemplate<String, String> kafkaTemplate, ObjectMapper mapper) {
+    //nari_dynamic.csv on disk (memory-mapped); when missing the classpath copy is used
+    @Value("${seax.replay.csv-path:src/main/resources/nari_dynamic.csv}")
+    private String csvPath;
+
+    public CsvProducer(KafkaTemplate<String, AisData> kafkaTemplate, ConsumerFactory<String, AisData> consumerFactory) {
         this.kafkaTemplate = kafkaTemplate;
-        this.mapper = mapper;
+        this.consumerFactory = consumerFactory;
+    }
+
+    //A bad seax.replay.speed fails the startup with a clear message, not the replay thread later on
+    @PostConstruct
+    void validateSettings() {
+        ReplayClock.fromSetting(replaySpeed);
     }
 
     public void produceCsvData() {
-        //Loads the file nari_dynamic.csv from the resources/ folder
-        try (InputStream is = getClass().getClassLoader().getResourceAsStream("nari_dynamic.csv");
-             BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(is), 65536);
-             CSVReader reader = new CSVReader(bufferedReader)) {
+        produceCsvData(false);
+    }
 
-            if (is == null) {
+    //resume = continue after the newest report already on the ais-data topic (incremental startup)
+    //instead of replaying the file from its first row. The consumer side resumes from its committed offsets.
+    public void produceCsvData(boolean resume) {
+        ReplayClock clock = ReplayClock.fromSetting(replaySpeed);
+        System.out.println("▶️ Replaying nari_dynamic.csv at " +
+                (clock.isUnthrottled() ? "max speed" : clock.getSpeedFactor() + "x"));
+
+        //Ticks before this timestamp were already produced by the previous run
+        long resumeFrom = resume ? findLatestProducedTimestamp() : Long.MIN_VALUE;
+        if (resumeFrom != Long.MIN_VALUE) {
+            System.out.println("⏩ Resuming replay at timestamp " + resumeFrom);
+        }
+
+        //Memory-maps nari_dynamic.csv (seax.replay.csv-path, or the resources/ folder as fallback)
+        try (MappedAisCsvReader reader = MappedAisCsvReader.open(csvPath, "nari_dynamic.csv")) {
+
+            if (reader == null) {
                 System.err.println("XXX CSV file NOT found. XXX");
                 return;
             }
+            System.out.println("📄 Reading nari_dynamic.csv " + (reader.isMapped() ? "(memory-mapped)" : "(classpath stream)"));
 
-            reader.readNext(); //Skip header
-            String[] nextLine;
-            long lastTimestamp = -1;
+            //All rows sharing one timestamp form a tick and are sent as one burst
+            List<AisData> tick = new ArrayList<>();
+            long tickTimestamp = -1;
 
-            while ((nextLine = reader.readNext()) != null) {
+            //Rows with too few columns or invalid numbers are skipped by the reader
+            while (reader.next()) {
+                //The last produced tick is sent again: it may have been cut short by the shutdown
+                if (reader.getTimestamp() < resumeFrom) {
+                    continue;
+                }
                 try {
-                    //Check if row has enough columns
-                    if (nextLine.length < 9) {
-                        System.err.println("XXX Skipping row - not enough columns: " + String.join(",", nextLine) + " XXX");
-                        continue;
+                    if (reader.getTimestamp() != tickTimestamp && !tick.isEmpty()) {
+                        sendTick(clock, tickTimestamp, tick);
+                        tick.clear();
                     }
+                    tickTimestamp = reader.getTimestamp();
+                    tick.add(reader.toAisData());
 
-                    AisData data = new AisData(
-                            Long.parseLong(nextLine[0]),
-                            Integer.parseInt(nextLine[1]),
-                            Integer.parseInt(nextLine[2]),
-                            Double.parseDouble(nextLine[3]),
-                            Double.parseDouble(nextLine[4]),
-                            Integer.parseInt(nextLine[5]),
-                            Double.parseDouble(nextLine[6]),
-                            Double.parseDouble(nextLine[7]),
-                            Long.parseLong(nextLine[8])
-                    );
-
-                    long currentTimestamp = data.getTimestamp();
-                    if (lastTimestamp != -1) {
-                        long delta = currentTimestamp - lastTimestamp;
-                        long sleepTimeMs = (delta * 1000) - PROCESSING_BUFFER_MS;
-
-                        if (delta > 0 && sleepTimeMs > 0) {
-                            Thread.sleep(sleepTimeMs);
-                        }
-                    }
-
-                    String json = mapper.writeValueAsString(data);
-                    //null means we’re not using a key
-                    kafkaTemplate.send(new ProducerRecord<>("ais-data", null, json));
-                    System.out.println(":) Sent: " + json + " :)");
-                    lastTimestamp = currentTimestamp;
-
-                } catch (NumberFormatException e) {
-                    //Handle bad number format gracefully
-                    System.err.println("XXX Skipping row - invalid number format: " + String.join(",", nextLine));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    System.err.println("XXX Replay interrupted");
+                    return;
                 } catch (Exception e) {
                     //Handle any other errors gracefully
-                    System.err.println("XXX Skipping row - unexpected error: " + String.join(",", nextLine));
+                    System.err.println("XXX Skipping row " + reader.getRowsRead() + " - unexpected error: " + e.getMessage());
                     e.printStackTrace();
                 }
             }
+            //Last tick of the file
+            if (!tick.isEmpty()) {
+                sendTick(clock, tickTimestamp, tick);
+            }
+            System.out.println(":) Replay of nari_dynamic.csv finished: " + reader.getRowsRead() + " rows, "
+                    + reader.getRowsSkipped() + " skipped (bad format) :)");
         }
         //Java automatically calls file.close() even if exception happens. (try())
         catch (Exception e) {
             e.printStackTrace();
         }
     }
+
+    //Newest data timestamp among the last record of every ais-data partition (Long.MIN_VALUE if the topic is empty)
+    //Rows are produced in timestamp order, so this is where the previous replay stopped
+    private long findLatestProducedTimestamp() {
+        long latest = Long.MIN_VALUE;
+        Properties readOnly = new Properties();
+        readOnly.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        try (Consumer<String, AisData> consumer = consumerFactory.createConsumer("seax-replay-resume", null, "-resume", readOnly)) {
+            List<TopicPartition> partitions = new ArrayList<>();
+            for (PartitionInfo info : consumer.partitionsFor("ais-data")) {
+                partitions.add(new TopicPartition(info.topic(), info.partition()));
+            }
+            //Read-only: assigned partitions, nothing committed
+            consumer.assign(partitions);
+            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+            Set<TopicPartition> pending = new HashSet<>();
+            for (TopicPartition partition : partitions) {
+                long end = endOffsets.getOrDefault(partition, 0L);
+                if (end > 0) {
+                    consumer.seek(partition, end - 1);
+                    pending.add(partition);
+                }
+            }
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!pending.isEmpty() && System.currentTimeMillis() < deadline) {
+                for (ConsumerRecord<String, AisData> record : consumer.poll(Duration.ofMillis(500))) {
+                    TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+                    if (record.offset() >= endOffsets.get(partition) - 1) {
+                        pending.remove(partition);
+                    }
+                    //null = record that could not be decoded
+                    if (record.value() != null) {
+                        latest = Math.max(latest, record.value().getTimestamp());
+                    }
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("XXX Could not read the end of ais-data, replaying from the start: " + e.getMessage());
+            return Long.MIN_VALUE;
+        }
+        return latest;
+    }
+
+    //Wait until the tick is due on the replay clock, then send all of its rows back to back
+    private void sendTick(ReplayClock clock, long tickTimestamp, List<AisData> tick) throws InterruptedException {
+        clock.awaitTick(tickTimestamp);
+        for (AisData data : tick) {
+            try {
+                //MMSI as key: all reports of a vessel land in the same partition, in order
+                kafkaTemplate.send(new ProducerRecord<>("ais-data", String.valueOf(data.getSourcemmsi()), data));
+            } catch (Exception e) {
+                System.err.println("XXX Failed to send row of MMSI " + data.getSourcemmsi() + ": " + e.getMessage());
+            }
+        }
+        System.out.println(":) Sent tick " + tickTimestamp + " (" + tick.size() + " messages) :)");
+    }
 }
@@ -0,0 +1,355 @@
+package com.seax.back.producer;
+
+import com.seax.back.model.AisData;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+//Allocation-light reader for nari_dynamic.csv
+//Memory-maps the file and parses the nine numeric columns straight from bytes into primitives:
+//no String[] per row, no String per field. Rows that do not parse (too few columns, bad numbers) are skipped and counted.
+//Falls back to the classpath stream when the file is not on disk (e.g. packaged inside the jar).
+//
+//Usage: while (reader.next()) { reader.getSourcemmsi(); ... }   (not thread-safe)
+public class MappedAisCsvReader implements Closeable {
+
+    private static final int COLUMNS = 9;
+    //Files larger than this are mapped region by region
+    private static final long MAX_REGION_BYTES = 1L << 30;
+    private static final int STREAM_BUFFER_BYTES = 1 << 16;
+    private static final int MAX_FIELD_BYTES = 64;
+
+    //Exact powers of ten (fast path of decimal -> double conversion)
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    //Byte source: mapped file regions or a buffered stream
+    private final FileChannel channel;
+    private final long fileSize;
+    private long regionStart;
+    private MappedByteBuffer region;
+    private final InputStream stream;
+    private final byte[] streamBuffer;
+    private int streamPos;
+    private int streamLimit;
+
+    //Reused for every field
+    private final byte[] field = new byte[MAX_FIELD_BYTES];
+    private int fieldLength;
+    //Terminator of the last field read: ',' '\n' or -1 (end of input)
+    private int fieldEnd;
+
+    //Current row
+    private long sourcemmsi;
+    private int navigationalstatus;
+    private int rateofturn;
+    private double speedoverground;
+    private double courseoverground;
+    private int trueheading;
+    private double lon;
+    private double lat;
+    private long timestamp;
+
+    private long rowsRead;
+    private long rowsSkipped;
+
+    private MappedAisCsvReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.fileSize = channel.size();
+        this.stream = null;
+        this.streamBuffer = null;
+        mapRegion(0);
+    }
+
+    private MappedAisCsvReader(InputStream stream) {
+        this.channel = null;
+        this.fileSize = -1;
+        this.stream = stream;
+        this.streamBuffer = new byte[STREAM_BUFFER_BYTES];
+    }
+
+    //Open filePath if it exists on disk, otherwise the classpath resource (mapped too when it is a plain file)
+    //Returns null when neither exists. The header line is skipped.
+    public static MappedAisCsvReader open(String filePath, String classpathResource) throws IOException {
+        MappedAisCsvReader reader = null;
+        if (filePath != null && !filePath.isBlank() && Files.isRegularFile(Paths.get(filePath))) {
+            reader = new MappedAisCsvReader(FileChannel.open(Paths.get(filePath), StandardOpenOption.READ));
+        } else {
+            URL url = MappedAisCsvReader.class.getClassLoader().getResource(classpathResource);
+            if (url == null) {
+                return null;
+            }
+            if ("file".equals(url.getProtocol())) {
+                try {
+                    Path path = Paths.get(url.toURI());
+                    reader = new MappedAisCsvReader(FileChannel.open(path, StandardOpenOption.READ));
+                } catch (Exception e) {
+                    reader = null;
+                }
+            }
+            if (reader == null) {
+                reader = new MappedAisCsvReader(url.openStream());
+            }
+        }
+        reader.skipLine();
+        return reader;
+    }
+
+    public boolean isMapped() {
+        return channel != null;
+    }
+
+    //Advance to the next valid row. Returns false at end of input.
+    public boolean next() throws IOException {
+        while (true) {
+            int first = peekEndOfInput();
+            if (first < 0) {
+                return false;
+            }
+            rowsRead++;
+            if (parseRow()) {
+                return true;
+            }
+            rowsSkipped++;
+            if (fieldEnd != '\n' && fieldEnd >= 0) {
+                skipLine();
+            }
+        }
+    }
+
+    public AisData toAisData() {
+        return new AisData(sourcemmsi, navigationalstatus, rateofturn, speedoverground,
+                courseoverground, trueheading, lon, lat, timestamp);
+    }
+
+    public long getSourcemmsi() { return sourcemmsi; }
+    public int getNavigationalstatus() { return navigationalstatus; }
+    public int getRateofturn() { return rateofturn; }
+    public double getSpeedoverground() { return speedoverground; }
+    public double getCourseoverground() { return courseoverground; }
+    public int getTrueheading() { return trueheading; }
+    public double getLon() { return lon; }
+    public double getLat() { return lat; }
+    public long getTimestamp() { return timestamp; }
+
+    public long getRowsRead() { return rowsRead; }
+    public long getRowsSkipped() { return rowsSkipped; }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    //Column order: sourcemmsi,navigationalstatus,rateofturn,speedoverground,courseoverground,trueheading,lon,lat,t
+    private boolean parseRow() throws IOException {
+        try {
+            for (int column = 0; column < COLUMNS; column++) {
+                if (!readField()) {
+                    return false;
+                }
+                //Every column but the last must end with ','
+                if (column < COLUMNS - 1 && fieldEnd != ',') {
+                    return false;
+                }
+                switch (column) {
+                    case 0 -> sourcemmsi = parseLong();
+                    case 1 -> navigationalstatus = parseInt();
+                    case 2 -> rateofturn = parseInt();
+                    case 3 -> speedoverground = parseDouble();
+                    case 4 -> courseoverground = parseDouble();
+                    case 5 -> trueheading = parseInt();
+                    case 6 -> lon = parseDouble();
+                    case 7 -> lat = parseDouble();
+                    default -> timestamp = parseLong();
+                }
+            }
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        //Ignore any extra columns
+        if (fieldEnd == ',') {
+            skipLine();
+            fieldEnd = '\n';
+        }
+        return true;
+    }
+
+    //Read bytes up to ',' / end of line into field. Returns false if the field is too long.
+    private boolean readField() throws IOException {
+        fieldLength = 0;
+        while (true) {
+            int b = read();
+            if (b < 0 || b == ',' || b == '\n') {
+                fieldEnd = b;
+                return true;
+            }
+            if (b == '\r' || b == '"' || b == ' ') {
+                continue;
+            }
+            if (fieldLength == MAX_FIELD_BYTES) {
+                fieldEnd = b;
+                return false;
+            }
+            field[fieldLength++] = (byte) b;
+        }
+    }
+
+    private long parseLong() {
+        if (fieldLength == 0) {
+            throw new NumberFormatException("empty field");
+        }
+        int i = 0;
+        boolean negative = field[0] == '-';
+        if (negative || field[0] == '+') {
+            i++;
+        }
+        if (i == fieldLength || fieldLength - i > 18) {
+            return Long.parseLong(fieldAsString());
+        }
+        long value = 0;
+        for (; i < fieldLength; i++) {
+            int digit = field[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("not a number: " + fieldAsString());
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    private int parseInt() {
+        long value = parseLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("out of int range: " + value);
+        }
+        return (int) value;
+    }
+
+    //Exact for up to 15 significant digits and |exponent| <= 22, which covers every NARI value;
+    //anything else goes through Double.parseDouble
+    private double parseDouble() {
+        if (fieldLength == 0) {
+            throw new NumberFormatException("empty field");
+        }
+        int i = 0;
+        boolean negative = field[0] == '-';
+        if (negative || field[0] == '+') {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        for (; i < fieldLength; i++) {
+            byte b = field[i];
+            if (b >= '0' && b <= '9') {
+                seenDigit = true;
+                if (mantissa == 0 && b == '0') {
+                    if (seenPoint) {
+                        exponent--;
+                    }
+                    continue;
+                }
+                if (digits >= 15) {
+                    return Double.parseDouble(fieldAsString());
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (seenPoint) {
+                    exponent--;
+                }
+            } else if (b == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                //Exponents, NaN, Infinity, ...
+                return Double.parseDouble(fieldAsString());
+            }
+        }
+        if (!seenDigit) {
+            throw new NumberFormatException("not a number: " + fieldAsString());
+        }
+        double value;
+        if (mantissa == 0) {
+            value = 0.0;
+        } else if (exponent >= 0 && exponent < POW10.length) {
+            value = mantissa * POW10[exponent];
+        } else if (exponent < 0 && -exponent < POW10.length) {
+            value = mantissa / POW10[-exponent];
+        } else {
+            return Double.parseDouble(fieldAsString());
+        }
+        return negative ? -value : value;
+    }
+
+    //Only used on the slow/error paths
+    private String fieldAsString() {
+        return new String(field, 0, fieldLength, StandardCharsets.ISO_8859_1);
+    }
+
+    private void skipLine() throws IOException {
+        int b;
+        do {
+            b = read();
+        } while (b >= 0 && b != '\n');
+    }
+
+    //-1 when no bytes are left, otherwise 0 (does not consume anything)
+    private int peekEndOfInput() throws IOException {
+        if (channel != null) {
+            return regionStart + region.position() < fileSize ? 0 : -1;
+        }
+        if (streamPos < streamLimit) {
+            return 0;
+        }
+        return fillStreamBuffer() ? 0 : -1;
+    }
+
+    private int read() throws IOException {
+        if (channel != null) {
+            if (!region.hasRemaining()) {
+                long nextStart = regionStart + region.limit();
+                if (nextStart >= fileSize) {
+                    return -1;
+                }
+                mapRegion(nextStart);
+            }
+            return region.get() & 0xFF;
+        }
+        if (streamPos == streamLimit && !fillStreamBuffer()) {
+            return -1;
+        }
+        return streamBuffer[streamPos++] & 0xFF;
+    }
+
+    private void mapRegion(long start) throws IOException {
+        regionStart = start;
+        region = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(MAX_REGION_BYTES, fileSize - start));
+    }
+
+    private boolean fillStreamBuffer() throws IOException {
+        int n = stream.read(streamBuffer, 0, streamBuffer.length);
+        if (n <= 0) {
+            return false;
+        }
+        streamPos = 0;
+        streamLimit = n;
+        return true;
+    }
+}
@@ -0,0 +1,75 @@
+package com.seax.back.producer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+//Paces the replay of a recorded feed (timestamps in seconds) against the wall clock
+//speedFactor 1 = real time, 10 = ten times faster, <= 0 = as fast as possible.
+//Every tick is scheduled relative to the start of the replay, so send time never accumulates as drift.
+public class ReplayClock {
+
+    private final double speedFactor;
+    private final LongSupplier nanoTime;
+
+    private long firstDataTimestamp = -1;
+    private long startNanos;
+
+    public ReplayClock(double speedFactor) {
+        this(speedFactor, System::nanoTime);
+    }
+
+    //Tests drive the clock by hand
+    ReplayClock(double speedFactor, LongSupplier nanoTime) {
+        this.speedFactor = speedFactor;
+        this.nanoTime = nanoTime;
+    }
+
+    //"max" (or any value <= 0) replays without pauses
+    public static ReplayClock fromSetting(String speed) {
+        if (speed == null || speed.isBlank() || "max".equalsIgnoreCase(speed.trim())) {
+            return new ReplayClock(0);
+        }
+        double speedFactor;
+        try {
+            speedFactor = Double.parseDouble(speed.trim());
+        } catch (NumberFormatException e) {
+            speedFactor = Double.NaN;
+        }
+        if (!Double.isFinite(speedFactor)) {
+            throw new IllegalArgumentException("Invalid seax.replay.speed '" + speed
+                    + "': expected a speed factor (1 = real time, 10 = ten times faster) or max");
+        }
+        return new ReplayClock(speedFactor);
+    }
+
+    public boolean isUnthrottled() {
+        return speedFactor <= 0;
+    }
+
+    public double getSpeedFactor() {
+        return speedFactor;
+    }
+
+    //Block until the tick with this data timestamp is due. The first tick is due immediately.
+    public void awaitTick(long dataTimestamp) throws InterruptedException {
+        if (firstDataTimestamp < 0) {
+            firstDataTimestamp = dataTimestamp;
+            startNanos = nanoTime.getAsLong();
+            return;
+        }
+        if (isUnthrottled()) {
+            return;
+        }
+
+        long offsetNanos = (long) ((dataTimestamp - firstDataTimestamp) * 1_000_000_000L / speedFactor);
+        long waitNanos = startNanos + offsetNanos - nanoTime.getAsLong();
+        //Late (or out of order) ticks are sent right away
+        if (waitNanos > 0) {
+            sleep(waitNanos);
+        }
+    }
+
+    void sleep(long nanos) throws InterruptedException {
+        TimeUnit.NANOSECONDS.sleep(nanos);
+    }
+}
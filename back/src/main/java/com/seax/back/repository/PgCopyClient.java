@@ -0,0 +1,113 @@
+package com.seax.back.repository;
+
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.function.Function;
+
+//PostgreSQL COPY ... FROM STDIN through pgjdbc's CopyManager, the fastest way to bulk load rows
+//The driver is only a runtime dependency of the app, so its API is reached by reflection.
+//Joins the caller's Spring transaction when there is one (same connection), otherwise autocommits.
+@Repository
+public class PgCopyClient {
+
+    private final DataSource dataSource;
+
+    public PgCopyClient(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    //Runs a "COPY table (columns) FROM STDIN ..." statement fed by data. Returns the number of rows copied
+    public long copyIn(String copySql, Reader data) throws SQLException {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            Class<?> pgConnectionClass = Class.forName("org.postgresql.PGConnection", true, connection.getClass().getClassLoader());
+            Object pgConnection = connection.unwrap(pgConnectionClass);
+            Object copyManager = pgConnectionClass.getMethod("getCopyAPI").invoke(pgConnection);
+            Method copyIn = copyManager.getClass().getMethod("copyIn", String.class, Reader.class);
+            return (Long) copyIn.invoke(copyManager, copySql, data);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            throw new SQLException("COPY failed: " + e.getCause(), e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new SQLException("COPY needs the PostgreSQL JDBC driver: " + e.getMessage(), e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    //True when the connection (the caller's transaction's one) is a PostgreSQL one, checked without running any SQL.
+    //Callers decide on COPY before the first statement: a failed COPY aborts the whole transaction,
+    //nothing can be retried in it afterwards.
+    public boolean isAvailable() {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            Class<?> pgConnectionClass = Class.forName("org.postgresql.PGConnection", true, connection.getClass().getClassLoader());
+            return connection.isWrapperFor(pgConnectionClass);
+        } catch (ClassNotFoundException | SQLException e) {
+            return false;
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    //COPY input rendered one line per element while the driver reads it (the whole text is never in memory)
+    public static <T> Reader lines(Iterable<T> rows, Function<T, String> toLine) {
+        return new LineReader<>(rows.iterator(), toLine);
+    }
+
+    //CSV field for COPY ... (FORMAT csv): null = empty field = NULL, text is always quoted
+    public static String csvText(String value) {
+        if (value == null) {
+            return "";
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    public static String csvValue(Object value) {
+        return value == null ? "" : value.toString();
+    }
+
+    private static final class LineReader<T> extends Reader {
+        private final Iterator<T> rows;
+        private final Function<T, String> toLine;
+        private String current = "";
+        private int position;
+
+        LineReader(Iterator<T> rows, Function<T, String> toLine) {
+            this.rows = rows;
+            this.toLine = toLine;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            while (position == current.length()) {
+                if (!rows.hasNext()) {
+                    return -1;
+                }
+                current = toLine.apply(rows.next()) + '\n';
+                position = 0;
+            }
+            int count = Math.min(length, current.length() - position);
+            current.getChars(position, position + count, buffer, offset);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
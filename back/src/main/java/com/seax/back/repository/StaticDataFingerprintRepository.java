@@ -0,0 +1,7 @@
+package com.seax.back.repository;
+
+import com.seax.back.model.StaticDataFingerprint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface StaticDataFingerprintRepository extends JpaRepository<StaticDataFingerprint, String> {
+}
@@ -2,7 +2,11 @@ package com.seax.back.repository;
 
 import com.seax.back.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,4 +15,8 @@ public interface UserRepository extends JpaRepository<User, Long> {
     //1. Find user by email (for login)
     User  findByEmail(String email);
 
+    //2. MMSIs of the user's fleet only (reads the junction table, no User or Vessel entities)
+    @Query("SELECT v.mmsi FROM User u JOIN u.fleetVessels v WHERE u.id = :userId")
+    List<Long> findFleetMmsisByUserId(@Param("userId") Long userId);
+
 }
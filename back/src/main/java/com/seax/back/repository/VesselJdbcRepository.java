@@ -0,0 +1,118 @@
+package com.seax.back.repository;
+
+import com.seax.back.model.Vessel;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.List;
+
+//Plain JDBC writes for the hot paths where JPA's select-before-merge is too slow
+@Repository
+public class VesselJdbcRepository {
+
+    //Insert new vessels, otherwise only touch the dynamic columns (static data is owned by the admin/static loader)
+    private static final String UPSERT_POSITION_SQL =
+            "INSERT INTO vessels (mmsi, vessel_type, country, name, imo, callsign, " +
+            "navigational_status, rate_of_turn, speed_over_ground, course_over_ground, true_heading, " +
+            "longitude, latitude, timestamp) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (mmsi) DO UPDATE SET " +
+            "navigational_status = EXCLUDED.navigational_status, " +
+            "rate_of_turn = EXCLUDED.rate_of_turn, " +
+            "speed_over_ground = EXCLUDED.speed_over_ground, " +
+            "course_over_ground = EXCLUDED.course_over_ground, " +
+            "true_heading = EXCLUDED.true_heading, " +
+            "longitude = EXCLUDED.longitude, " +
+            "latitude = EXCLUDED.latitude, " +
+            "timestamp = EXCLUDED.timestamp " +
+            //Never let an older position overwrite a newer one (several writers, redelivered batches)
+            "WHERE vessels.timestamp IS NULL OR EXCLUDED.timestamp >= vessels.timestamp";
+
+    private static final String STATIC_COLUMNS = "mmsi, vessel_type, country, name, imo, callsign";
+
+    //Reload: static columns are replaced, the dynamic ones (position) are kept
+    private static final String UPSERT_STATIC_FROM_LOAD_SQL =
+            "INSERT INTO vessels (" + STATIC_COLUMNS + ") " +
+            "SELECT " + STATIC_COLUMNS + " FROM vessels_static_load " +
+            "ON CONFLICT (mmsi) DO UPDATE SET " +
+            "vessel_type = EXCLUDED.vessel_type, " +
+            "country = EXCLUDED.country, " +
+            "name = EXCLUDED.name, " +
+            "imo = EXCLUDED.imo, " +
+            "callsign = EXCLUDED.callsign";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PgCopyClient pgCopyClient;
+
+    public VesselJdbcRepository(JdbcTemplate jdbcTemplate, PgCopyClient pgCopyClient) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.pgCopyClient = pgCopyClient;
+    }
+
+    //False when copyStaticData() cannot run on this database (not PostgreSQL)
+    public boolean supportsCopy() {
+        return pgCopyClient.isAvailable();
+    }
+
+    //Bulk load of static vessel data with COPY FROM STDIN, streamed from the collection
+    //upsert = false: plain COPY into vessels (empty table, first load)
+    //upsert = true: COPY into a temporary table, then one INSERT ... ON CONFLICT into vessels (reload)
+    //Returns the number of rows loaded
+    @Transactional
+    public long copyStaticData(Collection<Vessel> vessels, boolean upsert) throws SQLException {
+        if (!upsert) {
+            return pgCopyClient.copyIn("COPY vessels (" + STATIC_COLUMNS + ") FROM STDIN WITH (FORMAT csv)",
+                    PgCopyClient.lines(vessels, VesselJdbcRepository::staticCsvLine));
+        }
+        jdbcTemplate.execute("CREATE TEMPORARY TABLE IF NOT EXISTS vessels_static_load " +
+                "(LIKE vessels INCLUDING DEFAULTS) ON COMMIT DROP");
+        pgCopyClient.copyIn("COPY vessels_static_load (" + STATIC_COLUMNS + ") FROM STDIN WITH (FORMAT csv)",
+                PgCopyClient.lines(vessels, VesselJdbcRepository::staticCsvLine));
+        return jdbcTemplate.update(UPSERT_STATIC_FROM_LOAD_SQL);
+    }
+
+    private static String staticCsvLine(Vessel vessel) {
+        return vessel.getMmsi() + "," +
+                PgCopyClient.csvText(vessel.getVesselType()) + "," +
+                PgCopyClient.csvText(vessel.getCountry()) + "," +
+                PgCopyClient.csvText(vessel.getName()) + "," +
+                PgCopyClient.csvValue(vessel.getImo()) + "," +
+                PgCopyClient.csvText(vessel.getCallsign());
+    }
+
+    //Only the searchable columns of every vessel (search index rebuild), no entity mapping
+    public List<Vessel> findSearchFields() {
+        return jdbcTemplate.query("SELECT mmsi, name, callsign, imo FROM vessels", (rs, rowNum) -> {
+            Vessel vessel = new Vessel();
+            vessel.setMmsi(rs.getLong("mmsi"));
+            vessel.setName(rs.getString("name"));
+            vessel.setCallsign(rs.getString("callsign"));
+            vessel.setImo(rs.getObject("imo", Long.class));
+            return vessel;
+        });
+    }
+
+    //One JDBC batch for the whole list
+    public void upsertPositions(List<Vessel> vessels) {
+        jdbcTemplate.batchUpdate(UPSERT_POSITION_SQL, vessels, vessels.size(), (ps, vessel) -> {
+            ps.setLong(1, vessel.getMmsi());
+            ps.setString(2, vessel.getVesselType());
+            ps.setString(3, vessel.getCountry());
+            ps.setString(4, vessel.getName());
+            ps.setObject(5, vessel.getImo(), Types.BIGINT);
+            ps.setString(6, vessel.getCallsign());
+            ps.setObject(7, vessel.getNavigationalStatus(), Types.INTEGER);
+            ps.setObject(8, vessel.getRateOfTurn(), Types.INTEGER);
+            ps.setObject(9, vessel.getSpeedOverGround(), Types.DOUBLE);
+            ps.setObject(10, vessel.getCourseOverGround(), Types.DOUBLE);
+            ps.setObject(11, vessel.getTrueHeading(), Types.INTEGER);
+            ps.setObject(12, vessel.getLongitude(), Types.DOUBLE);
+            ps.setObject(13, vessel.getLatitude(), Types.DOUBLE);
+            ps.setObject(14, vessel.getTimestamp(), Types.BIGINT);
+        });
+    }
+}
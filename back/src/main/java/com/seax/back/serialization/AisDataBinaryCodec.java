@@ -0,0 +1,65 @@
+package com.seax.back.serialization;
+
+import com.seax.back.model.AisData;
+
+import java.nio.ByteBuffer;
+
+//Fixed-layout binary encoding of the nine dynamic AIS fields (big-endian, 61 bytes)
+//Static fields (name, type, country, imo, callsign) are not on the wire, the consumer fills them in.
+//
+// offset size field
+//  0      1   MAGIC (format/version marker, never '{' so it cannot be confused with JSON)
+//  1      8   sourcemmsi
+//  9      4   navigationalstatus
+// 13      4   rateofturn
+// 17      8   speedoverground
+// 25      8   courseoverground
+// 33      4   trueheading
+// 37      8   lon
+// 45      8   lat
+// 53      8   timestamp
+public final class AisDataBinaryCodec {
+
+    public static final byte MAGIC = (byte) 0xA1;
+    public static final int SIZE = 61;
+
+    private AisDataBinaryCodec() {
+    }
+
+    public static byte[] encode(AisData data) {
+        ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+        buffer.put(MAGIC);
+        buffer.putLong(data.getSourcemmsi());
+        buffer.putInt(data.getNavigationalstatus());
+        buffer.putInt(data.getRateofturn());
+        buffer.putDouble(data.getSpeedoverground());
+        buffer.putDouble(data.getCourseoverground());
+        buffer.putInt(data.getTrueheading());
+        buffer.putDouble(data.getLon());
+        buffer.putDouble(data.getLat());
+        buffer.putLong(data.getTimestamp());
+        return buffer.array();
+    }
+
+    public static boolean isBinary(byte[] bytes) {
+        return bytes != null && bytes.length > 0 && bytes[0] == MAGIC;
+    }
+
+    public static AisData decode(byte[] bytes) {
+        if (bytes.length != SIZE || bytes[0] != MAGIC) {
+            throw new IllegalArgumentException("Not a binary AisData record (" + bytes.length + " bytes)");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, SIZE - 1);
+        return new AisData(
+                buffer.getLong(),
+                buffer.getInt(),
+                buffer.getInt(),
+                buffer.getDouble(),
+                buffer.getDouble(),
+                buffer.getInt(),
+                buffer.getDouble(),
+                buffer.getDouble(),
+                buffer.getLong()
+        );
+    }
+}
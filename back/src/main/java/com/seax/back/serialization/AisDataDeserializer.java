@@ -0,0 +1,28 @@
+package com.seax.back.serialization;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seax.back.model.AisData;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+//Kafka deserializer for AisData, reads both wire formats of AisDataSerializer
+//The format is detected from the first byte, so topics can be switched between json and binary without draining them.
+public class AisDataDeserializer implements Deserializer<AisData> {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Override
+    public AisData deserialize(String topic, byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            if (AisDataBinaryCodec.isBinary(bytes)) {
+                return AisDataBinaryCodec.decode(bytes);
+            }
+            return mapper.readValue(bytes, AisData.class);
+        } catch (Exception e) {
+            throw new SerializationException("Failed to deserialize AisData from topic " + topic, e);
+        }
+    }
+}
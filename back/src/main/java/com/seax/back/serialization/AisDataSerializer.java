@@ -0,0 +1,46 @@
+package com.seax.back.serialization;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seax.back.model.AisData;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+//Kafka serializer for AisData with a wire format chosen per topic
+//Producer config "seax.ais.format.<topic>" = binary | json (default json, handy for debugging with console consumers)
+public class AisDataSerializer implements Serializer<AisData> {
+
+    public static final String FORMAT_CONFIG_PREFIX = "seax.ais.format.";
+    public static final String BINARY = "binary";
+    public static final String JSON = "json";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, String> topicFormats = new HashMap<>();
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        for (Map.Entry<String, ?> entry : configs.entrySet()) {
+            if (entry.getKey().startsWith(FORMAT_CONFIG_PREFIX) && entry.getValue() != null) {
+                String topic = entry.getKey().substring(FORMAT_CONFIG_PREFIX.length());
+                topicFormats.put(topic, entry.getValue().toString().trim().toLowerCase());
+            }
+        }
+    }
+
+    @Override
+    public byte[] serialize(String topic, AisData data) {
+        if (data == null) {
+            return null;
+        }
+        if (BINARY.equals(topicFormats.get(topic))) {
+            return AisDataBinaryCodec.encode(data);
+        }
+        try {
+            return mapper.writeValueAsBytes(data);
+        } catch (Exception e) {
+            throw new SerializationException("Failed to serialize AisData for topic " + topic, e);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.seax.back.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seax.back.model.AisData;
+import com.seax.back.model.RelayEnvelope;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+//Cluster fan-out of WebSocket traffic between backend nodes (seax.cluster.fanout.enabled)
+//The simple broker only reaches the browsers connected to its own node. With fan-out on, every node also
+//publishes what it broadcasts to an internal Kafka topic; every other node delivers it to its own sessions
+//(ClusterRelayConsumer). Each node reads the topic in a consumer group of its own, so relay delivery does not
+//depend on the ais-data consumer group nor on which node a browser is connected to.
+//  - live positions: the reports consumed on this node, one envelope per broadcast window (chunked)
+//  - messages: per-user destinations such as /topic/violations/{userId}
+//Messages are de-duplicated by envelope id (Kafka delivers at least once) and a node skips its own.
+@Service
+public class ClusterRelay {
+
+    //Reports per positions envelope: keeps a record well below the default 1 MB request size
+    private static final int POSITIONS_PER_ENVELOPE = 1000;
+    private static final String STANDALONE_NODE_ID = "standalone";
+
+    private final KafkaTemplate<String, String> relayKafkaTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${seax.cluster.fanout.enabled:false}")
+    private boolean enabled;
+
+    @Value("${seax.cluster.fanout.topic:seax-ws-relay}")
+    private String topic;
+
+    //Envelope ids remembered for de-duplication
+    @Value("${seax.cluster.fanout.dedup-capacity:100000}")
+    private int dedupCapacity;
+
+    //Stable name of this node, required with fan-out: it names the node's relay consumer group,
+    //so it must survive restarts (a new name per start would leave a consumer group behind every time)
+    @Value("${seax.cluster.node-id:}")
+    private String configuredNodeId;
+
+    private String nodeId;
+    //Start of this process: a restarted node with the same id never reuses an envelope id
+    private final String instance = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong sequence = new AtomicLong();
+    //Insertion order: the eldest id is forgotten first
+    private Map<String, Boolean> recentIds;
+
+    private final LongAdder envelopesSent = new LongAdder();
+    private final LongAdder envelopesDelivered = new LongAdder();
+    private final LongAdder duplicatesSkipped = new LongAdder();
+
+    public ClusterRelay(KafkaTemplate<String, String> relayKafkaTemplate, ObjectMapper objectMapper) {
+        this.relayKafkaTemplate = relayKafkaTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void init() {
+        boolean named = configuredNodeId != null && !configuredNodeId.isBlank();
+        if (enabled && !named) {
+            throw new IllegalStateException("seax.cluster.node-id is required when seax.cluster.fanout.enabled=true"
+                    + " (stable per node: the relay consumer group is seax-relay-<node-id>)");
+        }
+        //Fan-out off: the relay listener never starts, the name is not used for a consumer group
+        nodeId = named ? configuredNodeId.trim() : STANDALONE_NODE_ID;
+        int capacity = Math.max(1, dedupCapacity);
+        recentIds = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > capacity;
+            }
+        };
+        if (enabled) {
+            System.out.println("🛰️ Cluster fan-out enabled: node " + nodeId + ", relay topic " + topic);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    //Relay a STOMP message to the other nodes (the caller sends it to its own sessions)
+    public void relay(String destination, Object payload) {
+        if (enabled) {
+            publish(RelayEnvelope.MESSAGE, destination, payload);
+        }
+    }
+
+    //Relay the live reports consumed on this node to the other nodes' broadcasters
+    public void relayPositions(List<AisData> reports) {
+        if (!enabled) {
+            return;
+        }
+        for (int from = 0; from < reports.size(); from += POSITIONS_PER_ENVELOPE) {
+            publish(RelayEnvelope.POSITIONS, null, reports.subList(from, Math.min(reports.size(), from + POSITIONS_PER_ENVELOPE)));
+        }
+    }
+
+    //True when the envelope must be delivered here: sent by another node and not seen before
+    public boolean accept(RelayEnvelope envelope) {
+        if (envelope == null || envelope.getId() == null || nodeId.equals(envelope.getOrigin())) {
+            return false;
+        }
+        synchronized (recentIds) {
+            if (recentIds.put(envelope.getId(), Boolean.TRUE) != null) {
+                duplicatesSkipped.increment();
+                return false;
+            }
+        }
+        envelopesDelivered.increment();
+        return true;
+    }
+
+    public long getEnvelopesSent() {
+        return envelopesSent.sum();
+    }
+
+    public long getEnvelopesDelivered() {
+        return envelopesDelivered.sum();
+    }
+
+    public long getDuplicatesSkipped() {
+        return duplicatesSkipped.sum();
+    }
+
+    private void publish(String kind, String destination, Object payload) {
+        try {
+            RelayEnvelope envelope = new RelayEnvelope(nodeId + ":" + instance + ":" + sequence.incrementAndGet(),
+                    nodeId, kind, destination, objectMapper.writeValueAsString(payload));
+            //Keyed by node: the envelopes of one node stay in order
+            relayKafkaTemplate.send(topic, nodeId, objectMapper.writeValueAsString(envelope))
+                    .whenComplete((result, e) -> {
+                        if (e != null) {
+                            System.err.println("❌ Failed to relay " + kind + " to the cluster: " + e.getMessage());
+                        }
+                    });
+            envelopesSent.increment();
+        } catch (Exception e) {
+            System.err.println("❌ Failed to relay " + kind + " to the cluster: " + e.getMessage());
+        }
+    }
+}
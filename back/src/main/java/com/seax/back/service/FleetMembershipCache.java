@@ -0,0 +1,86 @@
+package com.seax.back.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+//MMSIs of each user's fleet, so list endpoints can flag "isInFleet" for thousands of vessels
+//with one cache lookup per request and a binary search per vessel (no User / fleet loading per vessel).
+//Filled lazily per user, kept current by VesselService (add/remove to fleet, after commit).
+@Component
+public class FleetMembershipCache {
+
+    private final ConcurrentHashMap<Long, Fleet> fleets = new ConcurrentHashMap<>();
+
+    //Immutable sorted MMSIs of one fleet
+    public record Fleet(long[] mmsis) {
+
+        public static final Fleet EMPTY = new Fleet(new long[0]);
+
+        public boolean contains(Long mmsi) {
+            return mmsi != null && Arrays.binarySearch(mmsis, mmsi) >= 0;
+        }
+
+        public int size() {
+            return mmsis.length;
+        }
+
+        static Fleet of(Collection<Long> mmsis) {
+            return new Fleet(mmsis.stream().mapToLong(Long::longValue).sorted().distinct().toArray());
+        }
+
+        Fleet with(long mmsi) {
+            int position = Arrays.binarySearch(mmsis, mmsi);
+            if (position >= 0) {
+                return this;
+            }
+            int insertAt = -position - 1;
+            long[] next = new long[mmsis.length + 1];
+            System.arraycopy(mmsis, 0, next, 0, insertAt);
+            next[insertAt] = mmsi;
+            System.arraycopy(mmsis, insertAt, next, insertAt + 1, mmsis.length - insertAt);
+            return new Fleet(next);
+        }
+
+        Fleet without(long mmsi) {
+            int position = Arrays.binarySearch(mmsis, mmsi);
+            if (position < 0) {
+                return this;
+            }
+            long[] next = new long[mmsis.length - 1];
+            System.arraycopy(mmsis, 0, next, 0, position);
+            System.arraycopy(mmsis, position + 1, next, position, mmsis.length - position - 1);
+            return new Fleet(next);
+        }
+    }
+
+    //The loader runs inside computeIfAbsent: an add/remove of the same user waits for it
+    //and is then applied on top, so a load racing with a fleet change never leaves a stale entry
+    public Fleet get(Long userId, Function<Long, Collection<Long>> loader) {
+        return fleets.computeIfAbsent(userId, id -> Fleet.of(loader.apply(id)));
+    }
+
+    //Only users already cached are updated, the others are loaded on their next request
+    public void added(Long userId, long mmsi) {
+        fleets.computeIfPresent(userId, (id, fleet) -> fleet.with(mmsi));
+    }
+
+    public void removed(Long userId, long mmsi) {
+        fleets.computeIfPresent(userId, (id, fleet) -> fleet.without(mmsi));
+    }
+
+    public void evict(Long userId) {
+        fleets.remove(userId);
+    }
+
+    public void clear() {
+        fleets.clear();
+    }
+
+    public int size() {
+        return fleets.size();
+    }
+}
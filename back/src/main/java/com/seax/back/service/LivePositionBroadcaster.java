@@ -0,0 +1,349 @@
+package com.seax.back.service;
+
+import com.seax.back.model.AisData;
+import com.seax.back.model.Vessel;
+import com.seax.back.model.Viewport;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.CloseStatus;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+//Time-bucketed WebSocket broadcast of the live positions
+//The ingest path only records the latest report per vessel; every coalesce-window-ms the reports
+//of the window go out as ONE frame (a JSON array) per destination:
+//  - /topic/ais-data: every vessel (when seax.websocket.global-feed is on)
+//  - /user/queue/ais-data of each session: the vessels inside its viewport (ViewportRegistry),
+//    delta-encoded per session (PositionDeltaEncoder): full snapshot of a vessel the session has not seen,
+//    then only its changed dynamic fields. /app/resync starts the session over from a snapshot of its viewport.
+//A vessel reporting several times within a window is sent once, with its newest position.
+//A viewport session gets frames only while the broker holds its /user/queue/ais-data subscription
+//(WebSocketSessionTracker): /app/viewport may arrive before the SUBSCRIBE is processed, or after an UNSUBSCRIBE.
+//Slow sessions: a session gets a new frame only while fewer than max-frames-in-flight of its frames wait in the
+//client outbound channel; meanwhile its updates wait in its SessionOutbox (bounded, latest report per vessel).
+//A session whose oldest frame waits longer than max-lag-ms is disconnected (the client reconnects and resyncs).
+//Cluster fan-out (ClusterRelay): the reports consumed here are relayed once per window to the other nodes,
+//the reports relayed by them join the windows of this node; each node serves its own sessions.
+@Service
+public class LivePositionBroadcaster {
+
+    static final String GLOBAL_DESTINATION = "/topic/ais-data";
+    //Clients subscribe to /user/queue/ais-data after sending their map bounds to /app/viewport
+    static final String VIEWPORT_DESTINATION = "/queue/ais-data";
+
+    private final SimpMessagingTemplate template;
+    private final ViewportRegistry viewportRegistry;
+    private final LiveVesselStore liveVesselStore;
+
+    private final WebSocketSessionTracker sessionTracker;
+    private final MeterRegistry meterRegistry;
+    private final ClusterRelay clusterRelay;
+
+    //Whole-world feed on /topic/ais-data, for clients that do not send a viewport yet
+    @Value("${seax.websocket.global-feed:true}")
+    private boolean globalFeed;
+
+    @Value("${seax.websocket.outbox.max-queued-vessels:5000}")
+    private int maxQueuedVessels;
+
+    //More than one frame of a session in flight relies on the broker preserving publish order (WebSocketConfig)
+    @Value("${seax.websocket.outbox.max-frames-in-flight:2}")
+    private int maxFramesInFlight;
+
+    @Value("${seax.websocket.outbox.max-lag-ms:10000}")
+    private long maxLagMs;
+
+    //Latest report of every vessel that moved since the last frame
+    private final ConcurrentHashMap<Long, AisData> pending = new ConcurrentHashMap<>();
+    //Same for the reports consumed on this node, for the other nodes (cluster fan-out only)
+    private final ConcurrentHashMap<Long, AisData> pendingRelay = new ConcurrentHashMap<>();
+    //Per viewport session: what it knows, what waits for it, what is in flight
+    private final ConcurrentHashMap<String, SessionOutbox> outboxes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, List<Meter>> sessionMeters = new ConcurrentHashMap<>();
+
+    private final LongAdder reportsReceived = new LongAdder();
+    private final LongAdder reportsSent = new LongAdder();
+    private final LongAdder framesSent = new LongAdder();
+    private final Counter slowDisconnects;
+
+    public LivePositionBroadcaster(SimpMessagingTemplate template, ViewportRegistry viewportRegistry,
+                                   LiveVesselStore liveVesselStore, WebSocketSessionTracker sessionTracker,
+                                   MeterRegistry meterRegistry, ClusterRelay clusterRelay) {
+        this.template = template;
+        this.viewportRegistry = viewportRegistry;
+        this.liveVesselStore = liveVesselStore;
+        this.sessionTracker = sessionTracker;
+        this.meterRegistry = meterRegistry;
+        this.clusterRelay = clusterRelay;
+        this.slowDisconnects = Counter.builder("seax.websocket.slow.disconnects")
+                .description("WebSocket sessions closed because their live frames lagged behind")
+                .register(meterRegistry);
+        Gauge.builder("seax.websocket.viewport.sessions", outboxes, Map::size)
+                .description("WebSocket sessions receiving viewport-scoped live positions")
+                .register(meterRegistry);
+    }
+
+    //Called for every consumed report; sent on the next window
+    public void publish(AisData data) {
+        reportsReceived.increment();
+        offer(pending, data);
+        if (clusterRelay.isEnabled()) {
+            offer(pendingRelay, data);
+        }
+    }
+
+    //Reports consumed on another node (cluster fan-out): broadcast here, not relayed again
+    public void publishRelayed(List<AisData> reports) {
+        for (AisData data : reports) {
+            offer(pending, data);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${seax.websocket.coalesce-window-ms:250}")
+    public void flush() {
+        if (!pendingRelay.isEmpty()) {
+            clusterRelay.relayPositions(drain(pendingRelay));
+        }
+        List<AisData> batch = drain(pending);
+        try {
+            if (!batch.isEmpty()) {
+                send(batch);
+                reportsSent.add(batch.size());
+            }
+            //Also without new reports: slow sessions may have caught up (or fallen too far behind)
+            if (!outboxes.isEmpty()) {
+                drainOutboxes();
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Failed to broadcast " + batch.size() + " live positions: " + e.getMessage());
+        }
+    }
+
+    //Newest report wins (a redelivered older one never replaces it)
+    private static void offer(ConcurrentHashMap<Long, AisData> reports, AisData data) {
+        reports.merge(data.getSourcemmsi(), data,
+                (queued, next) -> next.getTimestamp() >= queued.getTimestamp() ? next : queued);
+    }
+
+    //Entry by entry: a report arriving meanwhile is either in this window or in the next one, never lost
+    private static List<AisData> drain(ConcurrentHashMap<Long, AisData> reports) {
+        List<AisData> batch = new ArrayList<>(reports.size());
+        for (Long mmsi : reports.keySet()) {
+            AisData data = reports.remove(mmsi);
+            if (data != null) {
+                batch.add(data);
+            }
+        }
+        return batch;
+    }
+
+    private void send(List<AisData> batch) {
+        if (globalFeed) {
+            template.convertAndSend(GLOBAL_DESTINATION, batch);
+            framesSent.increment();
+        }
+        if (viewportRegistry.isEmpty()) {
+            return;
+        }
+        //Group the window by session: one frame per session
+        Map<String, List<AisData>> bySession = new HashMap<>();
+        for (AisData data : batch) {
+            for (String sessionId : viewportRegistry.sessionsContaining(data.getLat(), data.getLon())) {
+                bySession.computeIfAbsent(sessionId, k -> new ArrayList<>()).add(data);
+            }
+        }
+        for (Map.Entry<String, List<AisData>> entry : bySession.entrySet()) {
+            SessionOutbox outbox = outboxes.get(entry.getKey());
+            //null: closed meanwhile; not subscribed: nothing is kept for it
+            if (outbox != null && refreshSubscription(entry.getKey(), outbox)) {
+                outbox.offer(entry.getValue());
+            }
+        }
+    }
+
+    private void drainOutboxes() {
+        long now = System.nanoTime();
+        long maxLagNanos = TimeUnit.MILLISECONDS.toNanos(maxLagMs);
+        for (Map.Entry<String, SessionOutbox> entry : outboxes.entrySet()) {
+            String sessionId = entry.getKey();
+            SessionOutbox outbox = entry.getValue();
+            if (!refreshSubscription(sessionId, outbox)) {
+                continue;
+            }
+            long handled = sessionTracker.lastHandledLiveFrame(sessionId);
+            if (outbox.lagNanos(handled, now) > maxLagNanos) {
+                System.err.println("🐢 Closing slow WebSocket session " + sessionId + ": " + outbox.framesInFlight()
+                        + " frames in flight, " + outbox.queuedVessels() + " vessels waiting");
+                slowDisconnects.increment();
+                sessionTracker.close(sessionId, CloseStatus.SESSION_NOT_RELIABLE);
+                sessionClosed(sessionId);
+                continue;
+            }
+            synchronized (outbox) {
+                PositionDeltaEncoder.Frame frame = outbox.nextFrame(handled, maxFramesInFlight, now);
+                if (frame != null) {
+                    sendToSession(sessionId, frame, outbox.lastSequence());
+                }
+            }
+        }
+    }
+
+    //Register or move the viewport of a session (/app/viewport)
+    //Moved or zoomed: the vessels already in the new area (moored ones may not report for a long time) go out
+    //right away as snapshots of the live state, and later deltas only build on that snapshot
+    public void updateViewport(String sessionId, Viewport viewport) {
+        viewportRegistry.update(sessionId, viewport);
+        outboxes.computeIfAbsent(sessionId, this::openOutbox);
+        resync(sessionId);
+    }
+
+    //Client lost track (reconnect, tab woke up, frame rejected): forget what the session knows and
+    //send it the current state of every vessel in its viewport as snapshots
+    public void resync(String sessionId) {
+        SessionOutbox outbox = outboxes.get(sessionId);
+        if (outbox == null) {
+            return; //no viewport: nothing to resync
+        }
+        synchronized (outbox) {
+            //Just (re)subscribed: the snapshot below is the one it needs anyway
+            applySubscription(sessionId, outbox);
+            if (outbox.isActive()) { //not subscribed: the frame would be dropped
+                sendSnapshot(sessionId, outbox, viewportSnapshot(sessionId));
+            }
+        }
+    }
+
+    //Applies the latest SUBSCRIBE/UNSUBSCRIBE of the session to its outbox; true while it is subscribed
+    //On a (re)subscribe the client starts from nothing (the encoder is reset): it first gets every vessel
+    //of its viewport as a snapshot, then deltas against what that snapshot really delivered
+    private boolean refreshSubscription(String sessionId, SessionOutbox outbox) {
+        synchronized (outbox) {
+            if (applySubscription(sessionId, outbox) && outbox.isActive()) {
+                List<AisData> snapshot = viewportSnapshot(sessionId);
+                if (!snapshot.isEmpty()) {
+                    sendSnapshot(sessionId, outbox, snapshot);
+                }
+            }
+            return outbox.isActive();
+        }
+    }
+
+    private boolean applySubscription(String sessionId, SessionOutbox outbox) {
+        return outbox.subscriptionChanged(sessionTracker.liveSubscriptionChanges(sessionId),
+                sessionTracker.isSubscribedToLiveFrames(sessionId));
+    }
+
+    //Current state of every vessel in the viewport of the session (live store)
+    private List<AisData> viewportSnapshot(String sessionId) {
+        List<AisData> snapshot = new ArrayList<>();
+        for (double[] bounds : viewportRegistry.boundsOf(sessionId)) {
+            for (Vessel vessel : liveVesselStore.inArea(bounds[0], bounds[1], bounds[2], bounds[3])) {
+                snapshot.add(toAisData(vessel));
+            }
+        }
+        return snapshot;
+    }
+
+    //Caller holds the outbox lock
+    private void sendSnapshot(String sessionId, SessionOutbox outbox, List<AisData> snapshot) {
+        PositionDeltaEncoder.Frame frame = outbox.snapshot(snapshot, System.nanoTime());
+        sendToSession(sessionId, frame, outbox.lastSequence());
+    }
+
+    public void sessionClosed(String sessionId) {
+        viewportRegistry.remove(sessionId);
+        outboxes.remove(sessionId);
+        List<Meter> meters = sessionMeters.remove(sessionId);
+        if (meters != null) {
+            meters.forEach(meterRegistry::remove);
+        }
+    }
+
+    //Queue depth and drops of every session, tagged with its id (removed again when it closes)
+    private SessionOutbox openOutbox(String sessionId) {
+        SessionOutbox outbox = new SessionOutbox(maxQueuedVessels);
+        sessionMeters.put(sessionId, List.of(
+                Gauge.builder("seax.websocket.session.queued.vessels", outbox, SessionOutbox::queuedVessels)
+                        .description("Vessel updates waiting for a slow WebSocket session")
+                        .tag("session", sessionId)
+                        .register(meterRegistry),
+                Gauge.builder("seax.websocket.session.frames.in.flight", outbox, SessionOutbox::framesInFlight)
+                        .description("Live frames of a WebSocket session not yet handled by the outbound channel")
+                        .tag("session", sessionId)
+                        .register(meterRegistry),
+                FunctionCounter.builder("seax.websocket.session.dropped", outbox, SessionOutbox::dropped)
+                        .description("Vessel updates never sent to a slow WebSocket session (superseded or evicted)")
+                        .tag("session", sessionId)
+                        .register(meterRegistry)));
+        return outbox;
+    }
+
+    private void sendToSession(String sessionId, PositionDeltaEncoder.Frame frame, long sequence) {
+        template.convertAndSendToUser(sessionId, VIEWPORT_DESTINATION, frame, sessionHeaders(sessionId, sequence));
+        framesSent.increment();
+    }
+
+    public int viewportSessions() {
+        return outboxes.size();
+    }
+
+    public int pendingVessels() {
+        return pending.size();
+    }
+
+    public long getReportsReceived() {
+        return reportsReceived.sum();
+    }
+
+    public long getReportsSent() {
+        return reportsSent.sum();
+    }
+
+    public long getFramesSent() {
+        return framesSent.sum();
+    }
+
+    //Same fields as the consumer puts on a live report (position + static data)
+    static AisData toAisData(Vessel vessel) {
+        AisData data = new AisData(vessel.getMmsi(),
+                vessel.getNavigationalStatus() != null ? vessel.getNavigationalStatus() : 15,
+                vessel.getRateOfTurn() != null ? vessel.getRateOfTurn() : 0,
+                vessel.getSpeedOverGround() != null ? vessel.getSpeedOverGround() : 0,
+                vessel.getCourseOverGround() != null ? vessel.getCourseOverGround() : 0,
+                vessel.getTrueHeading() != null ? vessel.getTrueHeading() : 511,
+                vessel.getLongitude(), vessel.getLatitude(),
+                vessel.getTimestamp() != null ? vessel.getTimestamp() : 0);
+        data.setName(vessel.getName());
+        data.setType(vessel.getType());
+        data.setCountry(vessel.getCountry());
+        data.setImo(vessel.getImo());
+        data.setCallsign(vessel.getCallsign());
+        return data;
+    }
+
+    //Sessions are anonymous: address the user destination by session id
+    //The frame number comes back through the outbound channel (WebSocketSessionTracker) once handled
+    private static MessageHeaders sessionHeaders(String sessionId, long sequence) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setHeader(WebSocketSessionTracker.LIVE_FRAME_HEADER, sequence);
+        accessor.setLeaveMutable(true);
+        return accessor.getMessageHeaders();
+    }
+}
@@ -0,0 +1,355 @@
+package com.seax.back.service;
+
+import com.seax.back.model.AisData;
+import com.seax.back.model.Vessel;
+import com.seax.back.util.PointGridIndex;
+import com.seax.back.util.PositionChangeLog;
+import com.seax.back.util.TileClusterIndex;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+//In-memory live state of every vessel, keyed by MMSI
+//Loaded from the vessels table at startup, then kept current by the AIS consumer.
+//The vessels table is written behind (see VesselService.flushLiveState).
+//Stored Vessel objects are snapshots: writers replace them with a new copy, readers never see half an update.
+//Positions are also kept in a grid index so map area queries (inArea) do not scan every vessel,
+//and (name, MMSI) keys in a sorted set so the vessel list is served in name order without sorting.
+//Every change gets a version number in a change log, so map clients can ask for the changes since their last poll,
+//and moves a per-zoom cluster grid, so zoomed-out tiles are served as clusters.
+@Component
+public class LiveVesselStore {
+
+    //~11 km cells: a harbour view reads a handful of cells, a whole-sea view a few thousand
+    private static final double CELL_SIZE_DEGREES = 0.1;
+
+    private final ConcurrentHashMap<Long, Vessel> vessels = new ConcurrentHashMap<>();
+
+    //Updated inside the vessels.compute calls, so the moves of one MMSI never interleave
+    private final PointGridIndex<Long> positionIndex = new PointGridIndex<>(CELL_SIZE_DEGREES);
+
+    //Same rule as the position index: changed inside vessels.compute
+    private final ConcurrentSkipListSet<NameKey> nameOrder = new ConcurrentSkipListSet<>();
+
+    //Zoomed-out map tiles: vessels aggregated per zoom level up to this zoom (individual vessels above)
+    public static final int CLUSTER_MAX_ZOOM = 12;
+    private final TileClusterIndex clusters = new TileClusterIndex(CLUSTER_MAX_ZOOM);
+
+    //Last ~500k changes; a client further behind than that gets a full area read
+    private static final int CHANGE_LOG_CAPACITY = 1 << 19;
+
+    //Same rule again: recorded inside vessels.compute, so the versions of one MMSI follow its updates
+    private final PositionChangeLog changeLog = new PositionChangeLog(CHANGE_LOG_CAPACITY);
+
+    //Answer of changesInArea: vessels now in the area that changed (or all of them when full),
+    //and vessels that were in the area at sinceVersion but are not any more
+    public record AreaDelta(long version, boolean full, List<Vessel> upserted, List<Long> removed) {
+    }
+
+    //Position of a vessel in the name ordering: name (nulls last, like ORDER BY name), then MMSI
+    //Also the keyset pagination cursor of GET /api/vessels
+    public record NameKey(String name, long mmsi) implements Comparable<NameKey> {
+
+        private static final Comparator<NameKey> ORDER = Comparator
+                .comparing(NameKey::name, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparingLong(NameKey::mmsi);
+
+        public static NameKey of(Vessel vessel) {
+            return new NameKey(vessel.getName(), vessel.getMmsi());
+        }
+
+        @Override
+        public int compareTo(NameKey other) {
+            return ORDER.compare(this, other);
+        }
+
+        //Opaque URL-safe token: "<mmsi>:-" (no name) or "<mmsi>:+<name>"
+        public String toCursor() {
+            String raw = mmsi + ":" + (name == null ? "-" : "+" + name);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public static NameKey fromCursor(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.indexOf(':');
+                long mmsi = Long.parseLong(raw.substring(0, separator));
+                String name = raw.charAt(separator + 1) == '+' ? raw.substring(separator + 2) : null;
+                return new NameKey(name, mmsi);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+        }
+    }
+
+    //MMSIs changed since the last write-behind flush
+    private final Set<Long> dirtyMmsis = ConcurrentHashMap.newKeySet();
+
+    //Bulk load (startup). Positions received before the load finished are kept.
+    public void loadAll(Collection<Vessel> loadedVessels) {
+        for (Vessel loaded : loadedVessels) {
+            vessels.compute(loaded.getMmsi(), (mmsi, current) -> {
+                Vessel merged = loaded;
+                if (current != null) {
+                    merged = loaded.copy();
+                    if (current.getTimestamp() != null) {
+                        copyDynamicFields(current, merged);
+                    }
+                }
+                track(current, merged);
+                return merged;
+            });
+        }
+        System.out.println("🧠 Live vessel store loaded: " + vessels.size() + " vessels");
+    }
+
+    public Optional<Vessel> get(Long mmsi) {
+        return Optional.ofNullable(vessels.get(mmsi));
+    }
+
+    //Unmodifiable live view, iteration is weakly consistent
+    public Collection<Vessel> all() {
+        return Collections.unmodifiableCollection(vessels.values());
+    }
+
+    public int size() {
+        return vessels.size();
+    }
+
+    //Up to limit vessels in name order, starting after the given key (null = from the start)
+    public List<Vessel> pageByName(NameKey after, int limit) {
+        List<Vessel> page = new ArrayList<>(Math.min(limit, 1024));
+        Iterator<NameKey> keys = (after == null ? nameOrder : nameOrder.tailSet(after, false)).iterator();
+        while (keys.hasNext() && page.size() < limit) {
+            NameKey key = keys.next();
+            Vessel vessel = vessels.get(key.mmsi());
+            if (isCurrent(key, vessel)) {
+                page.add(vessel);
+            }
+        }
+        return page;
+    }
+
+    //Every vessel in name order, one at a time (nothing is copied; weakly consistent like all())
+    public void forEachByName(Consumer<Vessel> action) {
+        for (NameKey key : nameOrder) {
+            Vessel vessel = vessels.get(key.mmsi());
+            if (isCurrent(key, vessel)) {
+                action.accept(vessel);
+            }
+        }
+    }
+
+    //A key left behind by a rename is skipped: the vessel is visited under its new key
+    private static boolean isCurrent(NameKey key, Vessel vessel) {
+        return vessel != null && Objects.equals(vessel.getName(), key.name());
+    }
+
+    //Clusters of map tile z/x/y (zoom <= CLUSTER_MAX_ZOOM)
+    public List<TileClusterIndex.Cluster> clustersOfTile(int zoom, int tileX, int tileY) {
+        return clusters.clusters(zoom, tileX, tileY);
+    }
+
+    //Version of the newest change (the ETag of the delta endpoint)
+    public long version() {
+        return changeLog.version();
+    }
+
+    //Changes of one map area since a version returned by an earlier call
+    //sinceVersion null, unknown or too old -> full answer (every vessel in the area)
+    public AreaDelta changesInArea(double minLat, double maxLat, double minLon, double maxLon, Long sinceVersion) {
+        if (sinceVersion != null) {
+            //Where each changed vessel was at sinceVersion = before its first change after it
+            Map<Long, double[]> positionsAtSince = new HashMap<>();
+            long reached = changeLog.replay(sinceVersion, (version, mmsi, previousLat, previousLon) ->
+                    positionsAtSince.putIfAbsent(mmsi, new double[]{previousLat, previousLon}));
+            if (reached >= 0) {
+                List<Vessel> upserted = new ArrayList<>();
+                List<Long> removed = new ArrayList<>();
+                positionsAtSince.forEach((mmsi, before) -> {
+                    Vessel vessel = vessels.get(mmsi);
+                    if (vessel != null && inBox(vessel.getLatitude(), vessel.getLongitude(), minLat, maxLat, minLon, maxLon)) {
+                        upserted.add(vessel);
+                    } else if (inBox(before[0], before[1], minLat, maxLat, minLon, maxLon)) {
+                        removed.add(mmsi);
+                    }
+                });
+                return new AreaDelta(reached, false, upserted, removed);
+            }
+        }
+        //Version first: changes made during the read are sent again next time (harmless), never lost
+        long version = changeLog.version();
+        return new AreaDelta(version, true, inArea(minLat, maxLat, minLon, maxLon), List.of());
+    }
+
+    //Vessels whose position is inside the box (edges included), answered from the grid index
+    public List<Vessel> inArea(double minLat, double maxLat, double minLon, double maxLon) {
+        List<Vessel> inArea = new ArrayList<>();
+        positionIndex.candidates(minLat, minLon, maxLat, maxLon, mmsi -> {
+            Vessel vessel = vessels.get(mmsi);
+            //Exact test on the snapshot: the index is cell-accurate and the vessel may have moved since
+            if (vessel != null && inBox(vessel.getLatitude(), vessel.getLongitude(), minLat, maxLat, minLon, maxLon)) {
+                inArea.add(vessel);
+            }
+        });
+        return inArea;
+    }
+
+    //Add a vessel that is not in the store yet (e.g. unknown MMSI seen on the feed)
+    public Vessel addIfAbsent(Vessel vessel) {
+        return vessels.computeIfAbsent(vessel.getMmsi(), k -> {
+            dirtyMmsis.add(k);
+            Vessel added = vessel.copy();
+            track(null, added);
+            return added;
+        });
+    }
+
+    //Apply one AIS report. Unknown MMSIs are created with unknownVesselFactory,
+    //or ignored (returns null) when the factory is null.
+    //A report older than the stored position is not applied, the stored snapshot is returned unchanged (see isStale)
+    public Vessel applyPosition(AisData data, Function<Long, Vessel> unknownVesselFactory) {
+        boolean[] applied = {false};
+        Vessel updated = vessels.compute(data.getSourcemmsi(), (mmsi, current) -> {
+            Vessel next;
+            if (current != null) {
+                if (isStale(current, data)) {
+                    return current;
+                }
+                next = current.copy();
+            } else if (unknownVesselFactory != null) {
+                next = unknownVesselFactory.apply(mmsi);
+            } else {
+                return null;
+            }
+            next.setLatitude(data.getLat());
+            next.setLongitude(data.getLon());
+            next.setSpeedOverGround(data.getSpeedoverground());
+            next.setCourseOverGround(data.getCourseoverground());
+            next.setTrueHeading(data.getTrueheading());
+            next.setNavigationalStatus(data.getNavigationalstatus());
+            next.setRateOfTurn(data.getRateofturn());
+            next.setTimestamp(data.getTimestamp());
+            track(current, next);
+            applied[0] = true;
+            return next;
+        });
+        if (applied[0]) {
+            dirtyMmsis.add(updated.getMmsi());
+        }
+        return updated;
+    }
+
+    //True when the vessel already holds a newer position than this report (redelivery, rebalance)
+    public static boolean isStale(Vessel vessel, AisData data) {
+        return vessel.getTimestamp() != null && data.getTimestamp() < vessel.getTimestamp();
+    }
+
+    //Apply admin edits of static fields, keeping the latest dynamic fields
+    public Vessel updateStaticData(Vessel edited) {
+        return vessels.compute(edited.getMmsi(), (mmsi, current) -> {
+            Vessel next = edited.copy();
+            if (current != null) {
+                copyDynamicFields(current, next);
+            }
+            track(current, next);
+            return next;
+        });
+    }
+
+    //Take the snapshots changed since the previous call (write-behind flush)
+    public List<Vessel> drainDirty() {
+        List<Vessel> drained = new ArrayList<>();
+        for (Long mmsi : dirtyMmsis) {
+            //remove before reading: an update racing with us re-marks the MMSI for the next flush
+            dirtyMmsis.remove(mmsi);
+            Vessel vessel = vessels.get(mmsi);
+            if (vessel != null) {
+                drained.add(vessel);
+            }
+        }
+        return drained;
+    }
+
+    //Put back snapshots whose flush failed
+    public void markDirty(Collection<Vessel> failed) {
+        for (Vessel vessel : failed) {
+            dirtyMmsis.add(vessel.getMmsi());
+        }
+    }
+
+    public void clear() {
+        vessels.clear();
+        dirtyMmsis.clear();
+        positionIndex.clear();
+        nameOrder.clear();
+        clusters.clear();
+        //Clients holding older versions still show the removed vessels: they get a full answer
+        changeLog.reset();
+    }
+
+    //NaN and null positions are never inside
+    private static boolean inBox(Double lat, Double lon, double minLat, double maxLat, double minLon, double maxLon) {
+        return lat != null && lon != null && lat >= minLat && lat <= maxLat && lon >= minLon && lon <= maxLon;
+    }
+
+    //Every derived structure follows a snapshot replacement; always called inside vessels.compute
+    private void track(Vessel previous, Vessel next) {
+        indexPosition(next);
+        indexName(previous, next);
+        clusters.move(previous != null ? previous.getLatitude() : null, previous != null ? previous.getLongitude() : null,
+                previous != null ? previous.getType() : null, next.getLatitude(), next.getLongitude(), next.getType());
+        recordChange(previous, next);
+    }
+
+    private void recordChange(Vessel previous, Vessel next) {
+        changeLog.record(next.getMmsi(), previous != null ? previous.getLatitude() : null,
+                previous != null ? previous.getLongitude() : null);
+    }
+
+    private void indexName(Vessel previous, Vessel next) {
+        if (previous != null && Objects.equals(previous.getName(), next.getName())) {
+            return;
+        }
+        //Add first: an iteration running meanwhile may see the vessel twice (filtered out) but never miss it
+        nameOrder.add(NameKey.of(next));
+        if (previous != null) {
+            nameOrder.remove(NameKey.of(previous));
+        }
+    }
+
+    private void indexPosition(Vessel vessel) {
+        if (vessel.getLatitude() != null && vessel.getLongitude() != null) {
+            positionIndex.put(vessel.getMmsi(), vessel.getLatitude(), vessel.getLongitude());
+        } else {
+            positionIndex.remove(vessel.getMmsi());
+        }
+    }
+
+    private void copyDynamicFields(Vessel from, Vessel to) {
+        to.setNavigationalStatus(from.getNavigationalStatus());
+        to.setRateOfTurn(from.getRateOfTurn());
+        to.setSpeedOverGround(from.getSpeedOverGround());
+        to.setCourseOverGround(from.getCourseOverGround());
+        to.setTrueHeading(from.getTrueHeading());
+        to.setLongitude(from.getLongitude());
+        to.setLatitude(from.getLatitude());
+        to.setTimestamp(from.getTimestamp());
+    }
+}
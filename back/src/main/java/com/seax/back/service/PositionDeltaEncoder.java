@@ -0,0 +1,106 @@
+package com.seax.back.service;
+
+import com.seax.back.model.AisData;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+//Field-level delta encoding of the live positions of ONE WebSocket session
+//Remembers the last report sent to the session per vessel: a vessel the session has not seen yet
+//(or whose static data changed) goes out as a full snapshot, afterwards only the dynamic fields
+//that changed are sent, keyed by MMSI. reset() forgets everything (client resync).
+//Not thread-safe: LivePositionBroadcaster serializes the calls of one session.
+public class PositionDeltaEncoder {
+
+    //One frame of /user/queue/ais-data: full reports of new vessels, changed fields of known ones
+    public record Frame(List<AisData> snapshots, List<Map<String, Object>> deltas) {
+
+        public boolean isEmpty() {
+            return snapshots.isEmpty() && deltas.isEmpty();
+        }
+
+        public int size() {
+            return snapshots.size() + deltas.size();
+        }
+    }
+
+    private final Map<Long, AisData> lastSent = new HashMap<>();
+
+    public Frame encode(Collection<AisData> reports) {
+        List<AisData> snapshots = new ArrayList<>();
+        List<Map<String, Object>> deltas = new ArrayList<>();
+        for (AisData report : reports) {
+            AisData previous = lastSent.put(report.getSourcemmsi(), report);
+            if (previous == null || !sameStaticData(previous, report)) {
+                snapshots.add(report);
+                continue;
+            }
+            Map<String, Object> delta = delta(previous, report);
+            if (delta != null) {
+                deltas.add(delta);
+            }
+        }
+        return new Frame(snapshots, deltas);
+    }
+
+    //Everything as snapshots (resync), remembered as sent
+    public Frame snapshot(Collection<AisData> reports) {
+        lastSent.clear();
+        for (AisData report : reports) {
+            lastSent.put(report.getSourcemmsi(), report);
+        }
+        return new Frame(new ArrayList<>(reports), List.of());
+    }
+
+    public void reset() {
+        lastSent.clear();
+    }
+
+    public int knownVessels() {
+        return lastSent.size();
+    }
+
+    //Changed dynamic fields (same names as AisData), null when nothing changed
+    static Map<String, Object> delta(AisData previous, AisData next) {
+        Map<String, Object> delta = new LinkedHashMap<>();
+        delta.put("sourcemmsi", next.getSourcemmsi());
+        if (previous.getLat() != next.getLat()) {
+            delta.put("lat", next.getLat());
+        }
+        if (previous.getLon() != next.getLon()) {
+            delta.put("lon", next.getLon());
+        }
+        if (previous.getSpeedoverground() != next.getSpeedoverground()) {
+            delta.put("speedoverground", next.getSpeedoverground());
+        }
+        if (previous.getCourseoverground() != next.getCourseoverground()) {
+            delta.put("courseoverground", next.getCourseoverground());
+        }
+        if (previous.getTrueheading() != next.getTrueheading()) {
+            delta.put("trueheading", next.getTrueheading());
+        }
+        if (previous.getNavigationalstatus() != next.getNavigationalstatus()) {
+            delta.put("navigationalstatus", next.getNavigationalstatus());
+        }
+        if (previous.getRateofturn() != next.getRateofturn()) {
+            delta.put("rateofturn", next.getRateofturn());
+        }
+        if (previous.getTimestamp() != next.getTimestamp()) {
+            delta.put("timestamp", next.getTimestamp());
+        }
+        return delta.size() > 1 ? delta : null;
+    }
+
+    private static boolean sameStaticData(AisData previous, AisData next) {
+        return Objects.equals(previous.getName(), next.getName())
+                && Objects.equals(previous.getType(), next.getType())
+                && Objects.equals(previous.getCountry(), next.getCountry())
+                && Objects.equals(previous.getImo(), next.getImo())
+                && Objects.equals(previous.getCallsign(), next.getCallsign());
+    }
+}
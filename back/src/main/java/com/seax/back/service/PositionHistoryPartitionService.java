@@ -0,0 +1,229 @@
+package com.seax.back.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+//vessel_position_history is range-partitioned by history_timestamp (epoch seconds), one partition per hour
+//  - partitions are created ahead of the newest data hour, and on demand before a write (ensureCovered)
+//  - retention drops whole partitions instead of DELETEing rows (no bloat, no vacuum work)
+//  - track queries (mmsi + history_timestamp >= ?) only scan the partitions of the last hours
+//Hibernate still maps the entity; this class owns the table's physical layout.
+@Service
+public class PositionHistoryPartitionService {
+
+    static final String TABLE = "vessel_position_history";
+    private static final String SEQUENCE = "vessel_position_history_pk_seq";
+    private static final long HOUR_SECONDS = 3600L;
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd_HH");
+
+    private final JdbcTemplate jdbcTemplate;
+    //DDL runs in its own transaction, never inside the caller's (a rolled back batch must not undo a partition)
+    private final TransactionTemplate ddlTransaction;
+
+    //false = plain table, retention by DELETE (e.g. databases other than PostgreSQL)
+    @Value("${seax.history.partitioning.enabled:true}")
+    private boolean enabled;
+
+    //Hours of partitions kept ready after the newest data hour
+    @Value("${seax.history.partitioning.hours-ahead:3}")
+    private int hoursAhead;
+
+    //Hours (epoch seconds / 3600) that already have a partition
+    private final Set<Long> existingHours = ConcurrentHashMap.newKeySet();
+    //Newest data hour seen by ensureCovered (the replay runs on data time, not wall-clock time)
+    private final AtomicLong latestHour = new AtomicLong(Long.MIN_VALUE);
+
+    //EntityManagerFactory: only here so Hibernate has created/updated the schema before the table is converted
+    public PositionHistoryPartitionService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                           EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ddlTransaction = new TransactionTemplate(transactionManager);
+        this.ddlTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            if (!isPartitioned()) {
+                convertToPartitionedTable();
+            }
+            existingHours.addAll(listPartitionHours());
+            System.out.println("🗂️ " + TABLE + " is partitioned by hour (" + existingHours.size() + " partitions)");
+        } catch (Exception e) {
+            System.err.println("❌ Failed to set up partitioning of " + TABLE + ", using the plain table: " + e.getMessage());
+            enabled = false;
+        }
+    }
+
+    //Make sure every hour between the two timestamps has a partition (called before history rows are written)
+    //Known hours cost one set lookup, so this is cheap on the hot path
+    public void ensureCovered(long fromTimestamp, long toTimestamp) {
+        if (!enabled) {
+            return;
+        }
+        long fromHour = hourOf(Math.min(fromTimestamp, toTimestamp));
+        long toHour = hourOf(Math.max(fromTimestamp, toTimestamp));
+        latestHour.accumulateAndGet(toHour, Math::max);
+        for (long hour = fromHour; hour <= toHour; hour++) {
+            if (!existingHours.contains(hour)) {
+                createPartition(hour);
+            }
+        }
+    }
+
+    //Keep the next hours ready so the ingest path almost never has to create one itself
+    @Scheduled(fixedDelayString = "${seax.history.partitioning.ahead-check-ms:60000}")
+    public void createPartitionsAhead() {
+        long latest = latestHour.get();
+        if (!enabled || latest == Long.MIN_VALUE) {
+            return;
+        }
+        for (long hour = latest + 1; hour <= latest + hoursAhead; hour++) {
+            if (!existingHours.contains(hour)) {
+                try {
+                    createPartition(hour);
+                } catch (Exception e) {
+                    System.err.println("❌ Failed to create partition for hour " + hour + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    //Retention: detach and drop every partition whose whole hour is before the cutoff. Returns the number dropped
+    public int dropPartitionsBefore(long cutoffTimestamp) {
+        if (!enabled) {
+            return 0;
+        }
+        int dropped = 0;
+        for (Long hour : listPartitionHours()) {
+            if ((hour + 1) * HOUR_SECONDS <= cutoffTimestamp) {
+                dropPartition(hour);
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    public static long hourOf(long timestamp) {
+        return Math.floorDiv(timestamp, HOUR_SECONDS);
+    }
+
+    public static String partitionName(long hour) {
+        return TABLE + "_" + PARTITION_SUFFIX.format(LocalDateTime.ofEpochSecond(hour * HOUR_SECONDS, 0, ZoneOffset.UTC));
+    }
+
+    //null when the name is not one of ours
+    static Long hourOfPartition(String partitionName) {
+        if (partitionName == null || !partitionName.startsWith(TABLE + "_")) {
+            return null;
+        }
+        try {
+            LocalDateTime start = LocalDateTime.parse(partitionName.substring(TABLE.length() + 1), PARTITION_SUFFIX);
+            return hourOf(start.toEpochSecond(ZoneOffset.UTC));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    //Serialized inside this node; CREATE ... IF NOT EXISTS covers other nodes
+    private synchronized void createPartition(long hour) {
+        if (existingHours.contains(hour)) {
+            return;
+        }
+        long from = hour * HOUR_SECONDS;
+        ddlTransaction.executeWithoutResult(status -> jdbcTemplate.execute(
+                "CREATE TABLE IF NOT EXISTS " + partitionName(hour) + " PARTITION OF " + TABLE +
+                " FOR VALUES FROM (" + from + ") TO (" + (from + HOUR_SECONDS) + ")"));
+        existingHours.add(hour);
+    }
+
+    private synchronized void dropPartition(long hour) {
+        String name = partitionName(hour);
+        ddlTransaction.executeWithoutResult(status -> {
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + name);
+            jdbcTemplate.execute("DROP TABLE " + name);
+        });
+        existingHours.remove(hour);
+        System.out.println("🧹 Dropped history partition " + name + " (data before " + Instant.ofEpochSecond((hour + 1) * HOUR_SECONDS) + ")");
+    }
+
+    private List<Long> listPartitionHours() {
+        return jdbcTemplate.queryForList(
+                        "SELECT c.relname FROM pg_inherits i " +
+                        "JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "JOIN pg_class p ON p.oid = i.inhparent " +
+                        "WHERE p.relname = ?", String.class, TABLE)
+                .stream()
+                .map(PositionHistoryPartitionService::hourOfPartition)
+                .filter(hour -> hour != null)
+                .sorted()
+                .toList();
+    }
+
+    private boolean isPartitioned() {
+        List<String> kinds = jdbcTemplate.queryForList(
+                "SELECT relkind::text FROM pg_class WHERE relname = ? AND relkind IN ('r', 'p')", String.class, TABLE);
+        return kinds.contains("p");
+    }
+
+    //One-off migration of the table Hibernate created: rename, recreate partitioned, copy the rows, drop the old one
+    //The primary key has to include the partition key, so it becomes (id, history_timestamp);
+    //ids keep coming from a plain sequence, which Hibernate's IDENTITY inserts read back as generated keys
+    private void convertToPartitionedTable() {
+        String legacy = TABLE + "_legacy";
+        ddlTransaction.executeWithoutResult(status -> {
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " RENAME TO " + legacy);
+            jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS " + SEQUENCE);
+            jdbcTemplate.execute("CREATE TABLE " + TABLE + " (" +
+                    "id BIGINT NOT NULL DEFAULT nextval('" + SEQUENCE + "'), " +
+                    "mmsi BIGINT, " +
+                    "latitude DOUBLE PRECISION, " +
+                    "longitude DOUBLE PRECISION, " +
+                    "history_timestamp BIGINT NOT NULL, " +
+                    "PRIMARY KEY (id, history_timestamp)" +
+                    ") PARTITION BY RANGE (history_timestamp)");
+            jdbcTemplate.execute("ALTER SEQUENCE " + SEQUENCE + " OWNED BY " + TABLE + ".id");
+            jdbcTemplate.execute("SELECT setval('" + SEQUENCE + "', (SELECT COALESCE(MAX(id), 0) + 1 FROM " + legacy + "), false)");
+            //Partitioned index: every partition gets its own (mmsi, history_timestamp) index
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + TABLE + "_mmsi_ts_idx ON " + TABLE + " (mmsi, history_timestamp)");
+
+            List<Long> hours = jdbcTemplate.queryForList(
+                    "SELECT DISTINCT history_timestamp / " + HOUR_SECONDS + " FROM " + legacy +
+                    " WHERE history_timestamp IS NOT NULL", Long.class);
+            for (Long hour : hours) {
+                long from = hour * HOUR_SECONDS;
+                jdbcTemplate.execute("CREATE TABLE " + partitionName(hour) + " PARTITION OF " + TABLE +
+                        " FOR VALUES FROM (" + from + ") TO (" + (from + HOUR_SECONDS) + ")");
+            }
+            int copied = jdbcTemplate.update("INSERT INTO " + TABLE + " (id, mmsi, latitude, longitude, history_timestamp) " +
+                    "SELECT id, mmsi, latitude, longitude, history_timestamp FROM " + legacy +
+                    " WHERE history_timestamp IS NOT NULL");
+            jdbcTemplate.execute("DROP TABLE " + legacy);
+            System.out.println("🗂️ Converted " + TABLE + " to hourly partitions (" + hours.size() + " partitions, " + copied + " rows)");
+        });
+    }
+}
@@ -0,0 +1,176 @@
+package com.seax.back.service;
+
+import com.seax.back.model.VesselPositionHistory;
+import com.seax.back.repository.PgCopyClient;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+//Buffered writer for vessel_position_history
+//Listener threads only append to a buffer; rows go to Postgres with one COPY per flush
+//(every batch-size rows, every flush-interval-ms, and on shutdown). Ids come from the column default,
+//so there is no per-row INSERT ... RETURNING round trip like with the IDENTITY entity.
+//Not PostgreSQL (no COPY): one JDBC batch INSERT per flush instead.
+//Durability: rows are buffered AFTER the Kafka batch they come from is acknowledged, so they are not redelivered.
+//A crash or kill -9 loses the buffered rows: normally at most one flush interval / batch-size worth, but up to
+//max-buffered rows while the database is unreachable. A graceful shutdown flushes them (@PreDestroy).
+//vessels keeps the latest position either way; only history points are lost.
+@Service
+public class PositionHistoryWriter {
+
+    private static final String COPY_SQL =
+            "COPY vessel_position_history (mmsi, latitude, longitude, history_timestamp) FROM STDIN WITH (FORMAT csv)";
+    private static final String INSERT_SQL =
+            "INSERT INTO vessel_position_history (mmsi, latitude, longitude, history_timestamp) VALUES (?, ?, ?, ?)";
+
+    private final PgCopyClient pgCopyClient;
+    private final JdbcTemplate jdbcTemplate;
+    private final PositionHistoryPartitionService historyPartitions;
+
+    //Flush as soon as this many rows are buffered
+    @Value("${seax.history.writer.batch-size:5000}")
+    private int batchSize;
+
+    //If the database is down, keep at most this many rows for retry; older ones are dropped
+    //(also the most history rows a crash can lose, see above)
+    @Value("${seax.history.writer.max-buffered:500000}")
+    private int maxBuffered;
+
+    private final Object bufferLock = new Object();
+    private List<VesselPositionHistory> buffer = new ArrayList<>();
+    //One COPY at a time; appends continue into the new buffer meanwhile
+    private final ReentrantLock flushLock = new ReentrantLock();
+    //Checked on the first flush (guarded by flushLock): the database does not change while running
+    private Boolean copyAvailable;
+
+    private final LongAdder rowsWritten = new LongAdder();
+    private final LongAdder rowsDropped = new LongAdder();
+
+    public PositionHistoryWriter(PgCopyClient pgCopyClient, JdbcTemplate jdbcTemplate,
+                                 PositionHistoryPartitionService historyPartitions) {
+        this.pgCopyClient = pgCopyClient;
+        this.jdbcTemplate = jdbcTemplate;
+        this.historyPartitions = historyPartitions;
+    }
+
+    public void append(Collection<VesselPositionHistory> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        boolean full;
+        synchronized (bufferLock) {
+            buffer.addAll(rows);
+            full = buffer.size() >= batchSize;
+        }
+        //The appending thread does the flush: natural back-pressure on the consumer
+        if (full) {
+            flush();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${seax.history.writer.flush-interval-ms:500}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<VesselPositionHistory> rows;
+            synchronized (bufferLock) {
+                if (buffer.isEmpty()) {
+                    return;
+                }
+                rows = buffer;
+                buffer = new ArrayList<>(Math.max(batchSize, 16));
+            }
+            try {
+                write(rows);
+                rowsWritten.add(rows.size());
+            } catch (Exception e) {
+                System.err.println("❌ Failed to write " + rows.size() + " position history rows: " + e.getMessage());
+                requeue(rows);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        System.out.println("💾 Position history writer stopped: " + rowsWritten.sum() + " rows written, "
+                + rowsDropped.sum() + " dropped");
+    }
+
+    public int bufferedRows() {
+        synchronized (bufferLock) {
+            return buffer.size();
+        }
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten.sum();
+    }
+
+    public long getRowsDropped() {
+        return rowsDropped.sum();
+    }
+
+    private void write(List<VesselPositionHistory> rows) throws Exception {
+        long minTimestamp = Long.MAX_VALUE;
+        long maxTimestamp = Long.MIN_VALUE;
+        for (VesselPositionHistory row : rows) {
+            minTimestamp = Math.min(minTimestamp, row.getHistoryTimestamp());
+            maxTimestamp = Math.max(maxTimestamp, row.getHistoryTimestamp());
+        }
+        //Every row needs an hourly partition to land in
+        historyPartitions.ensureCovered(minTimestamp, maxTimestamp);
+        if (copyAvailable == null) {
+            copyAvailable = pgCopyClient.isAvailable();
+            if (!copyAvailable) {
+                System.err.println("ERROR: COPY not available on this database, writing position history with batch INSERTs");
+            }
+        }
+        if (!copyAvailable) {
+            insertBatch(rows);
+            return;
+        }
+        //Rendered row by row while the driver reads (a requeued backlog is never one big string)
+        pgCopyClient.copyIn(COPY_SQL, PgCopyClient.lines(rows, PositionHistoryWriter::csvLine));
+    }
+
+    //One JDBC batch for the whole flush
+    private void insertBatch(List<VesselPositionHistory> rows) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(), (ps, row) -> {
+            ps.setLong(1, row.getMmsi());
+            ps.setObject(2, row.getLatitude(), Types.DOUBLE);
+            ps.setObject(3, row.getLongitude(), Types.DOUBLE);
+            ps.setLong(4, row.getHistoryTimestamp());
+        });
+    }
+
+    private static String csvLine(VesselPositionHistory row) {
+        return row.getMmsi() + "," + PgCopyClient.csvValue(row.getLatitude()) + ","
+                + PgCopyClient.csvValue(row.getLongitude()) + "," + row.getHistoryTimestamp();
+    }
+
+    //Failed rows go back in front of the newer ones, trimmed to max-buffered
+    private void requeue(List<VesselPositionHistory> rows) {
+        synchronized (bufferLock) {
+            rows.addAll(buffer);
+            int overflow = rows.size() - Math.max(maxBuffered, 0);
+            if (overflow > 0) {
+                rows = new ArrayList<>(rows.subList(overflow, rows.size()));
+                rowsDropped.add(overflow);
+                System.err.println("❌ Position history buffer full, dropped " + overflow + " oldest rows");
+            }
+            buffer = rows;
+        }
+    }
+}
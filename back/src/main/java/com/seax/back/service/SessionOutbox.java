@@ -0,0 +1,135 @@
+package com.seax.back.service;
+
+import com.seax.back.model.AisData;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+//Outbound state of ONE viewport session: what it already knows (delta encoder), the updates waiting
+//for it and the frames handed to the client outbound channel but not handled yet (in flight)
+//Active only while the session is subscribed to its live destination: without a subscription the broker drops
+//the frames, so they would never be handled. Every subscription change starts the in-flight accounting over.
+//Frames are numbered; the outbound channel reports the number of the last one it handled, once per frame
+//whatever the number of subscriptions the broker copied it to.
+//While too many frames are in flight the session is "slow": its updates wait here, latest report
+//per vessel only, and past max-queued vessels the oldest waiting vessel is dropped. Memory per
+//session is therefore bounded whatever the burst, instead of piling up in the outbound channel.
+//Thread-safe: every method runs under the outbox lock. The broadcaster holds it while handing a frame to the
+//outbound channel, so frames leave in encoding order; they reach the socket in that order because the broker
+//preserves publish order per session (WebSocketConfig), the channel's thread pool alone would not.
+public class SessionOutbox {
+
+    private final int maxQueuedVessels;
+    private final PositionDeltaEncoder encoder = new PositionDeltaEncoder();
+    //Insertion order = age: the first entry is the vessel waiting the longest
+    private final LinkedHashMap<Long, AisData> queued = new LinkedHashMap<>();
+    //{sequence, System.nanoTime()} of every frame in flight, oldest first
+    private final ArrayDeque<long[]> inFlight = new ArrayDeque<>();
+    //Number of the last frame handed out
+    private long sequence;
+    //Subscription state last seen (WebSocketSessionTracker)
+    private long subscriptionChanges = -1;
+    private boolean active;
+    private long dropped;
+
+    public SessionOutbox(int maxQueuedVessels) {
+        if (maxQueuedVessels <= 0) {
+            throw new IllegalArgumentException("maxQueuedVessels must be > 0");
+        }
+        this.maxQueuedVessels = maxQueuedVessels;
+    }
+
+    public synchronized void offer(Collection<AisData> reports) {
+        for (AisData report : reports) {
+            //Still waiting from an earlier window: superseded by the newer report
+            if (queued.remove(report.getSourcemmsi()) != null) {
+                dropped++;
+            }
+            queued.put(report.getSourcemmsi(), report);
+            if (queued.size() > maxQueuedVessels) {
+                Iterator<AisData> oldest = queued.values().iterator();
+                oldest.next();
+                oldest.remove();
+                dropped++;
+            }
+        }
+    }
+
+    //Applies the subscription state of the session; true when it changed since the last call
+    //A change forgets the frames in flight: the broker may have dropped them (no subscription) and will
+    //not report them handled. It also forgets what the client knows: a delta against a snapshot that
+    //was dropped would refer to a vessel the client never got.
+    public synchronized boolean subscriptionChanged(long changes, boolean subscribed) {
+        if (changes == subscriptionChanges) {
+            return false;
+        }
+        subscriptionChanges = changes;
+        active = subscribed;
+        queued.clear();
+        inFlight.clear();
+        encoder.reset();
+        return true;
+    }
+
+    public synchronized boolean isActive() {
+        return active;
+    }
+
+    //Frame of everything waiting, or null when nothing waits or maxInFlight frames are not handled yet
+    //lastHandled: number of the last frame of this session handled by the outbound channel
+    public synchronized PositionDeltaEncoder.Frame nextFrame(long lastHandled, int maxInFlight, long now) {
+        acknowledge(lastHandled);
+        if (queued.isEmpty() || inFlight.size() >= maxInFlight) {
+            return null;
+        }
+        PositionDeltaEncoder.Frame frame = encoder.encode(queued.values());
+        queued.clear();
+        if (frame.isEmpty()) {
+            return null;
+        }
+        inFlight.add(new long[]{++sequence, now});
+        return frame;
+    }
+
+    //Resync: the session starts over from a full snapshot, whatever was waiting is part of it
+    public synchronized PositionDeltaEncoder.Frame snapshot(List<AisData> reports, long now) {
+        queued.clear();
+        inFlight.add(new long[]{++sequence, now});
+        return encoder.snapshot(reports);
+    }
+
+    //Number of the frame last returned by nextFrame()/snapshot(), sent along with it
+    public synchronized long lastSequence() {
+        return sequence;
+    }
+
+    //How long the oldest frame in flight has been waiting for the outbound channel, 0 when none
+    public synchronized long lagNanos(long lastHandled, long now) {
+        acknowledge(lastHandled);
+        long[] oldest = inFlight.peek();
+        return oldest != null ? now - oldest[1] : 0;
+    }
+
+    public synchronized int queuedVessels() {
+        return queued.size();
+    }
+
+    public synchronized int framesInFlight() {
+        return inFlight.size();
+    }
+
+    //Updates never sent to the session (superseded while waiting, or evicted as the oldest)
+    public synchronized long dropped() {
+        return dropped;
+    }
+
+    //Frames are handled in order (publish order is preserved): everything up to lastHandled is done
+    private void acknowledge(long lastHandled) {
+        while (!inFlight.isEmpty() && inFlight.peek()[0] <= lastHandled) {
+            inFlight.poll();
+        }
+    }
+}
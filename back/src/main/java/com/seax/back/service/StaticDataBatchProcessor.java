@@ -1,7 +1,10 @@
 package com.seax.back.service;
 
 import com.opencsv.CSVReader;
+import com.seax.back.model.StaticDataFingerprint;
 import com.seax.back.model.Vessel;
+import com.seax.back.repository.StaticDataFingerprintRepository;
+import com.seax.back.repository.VesselJdbcRepository;
 import com.seax.back.repository.VesselRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -9,7 +12,16 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.security.MessageDigest;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 
 @Service
 public class StaticDataBatchProcessor {
@@ -17,42 +29,201 @@ public class StaticDataBatchProcessor {
     @Autowired
     private VesselRepository vesselRepository;
 
+    //COPY bulk loader (vessels table)
+    @Autowired
+    private VesselJdbcRepository vesselJdbcRepository;
+
+    @Autowired
+    private StaticDataFingerprintRepository fingerprintRepository;
+
+    //Rebuilt at the end of every load below, from what the vessels table now holds
+    @Autowired
+    private VesselSearchIndex vesselSearchIndex;
+
+    //Every file the vessels' static columns are derived from
+    private static final List<String> STATIC_FILES = List.of("vessel_types.csv", "nari_static.csv", "MMSI_Country_Codes.csv");
+
     @Transactional
     public void loadAllStaticData() {
         //Check if vessels already loaded
         long existingVessels = vesselRepository.count();
         if (existingVessels > 0) {
             System.out.println("✅ Vessels already initialized. Count: " + existingVessels);
+            rebuildSearchIndex();
             return;
         }
+        Map<String, String> fingerprints = computeFingerprints();
+        loadStaticData(false);
+        saveFingerprints(fingerprints);
+        rebuildSearchIndex();
+    }
+
+    //Re-read the static files into a filled vessels table: static columns are upserted, positions are kept
+    @Transactional
+    public void reloadAllStaticData() {
+        Map<String, String> fingerprints = computeFingerprints();
+        loadStaticData(true);
+        saveFingerprints(fingerprints);
+        rebuildSearchIndex();
+    }
+
+    //Incremental startup (seax.startup.mode=incremental): the tables are kept
+    //  - static files unchanged since the last load -> nothing to do
+    //  - files changed -> only the MMSIs whose static data differs from the vessels table are upserted
+    @Transactional
+    public void syncStaticData() {
+        Map<String, String> fingerprints = computeFingerprints();
+        long existingVessels = vesselRepository.count();
+        if (existingVessels == 0) {
+            System.out.println("🔧 Vessels table is empty, running a full static load");
+            loadStaticData(false);
+            saveFingerprints(fingerprints);
+            rebuildSearchIndex();
+            return;
+        }
+
+        Map<String, String> stored = new HashMap<>();
+        for (StaticDataFingerprint fingerprint : fingerprintRepository.findAll()) {
+            stored.put(fingerprint.getFileName(), fingerprint.getSha256());
+        }
+        if (stored.equals(fingerprints)) {
+            System.out.println("✅ Static data files unchanged, keeping " + existingVessels + " vessels");
+            rebuildSearchIndex();
+            return;
+        }
+        System.out.println("🔧 Static data files changed, applying differences...");
+
+        Set<Vessel> merged = buildVesselSet();
+        Map<Long, Vessel> current = new HashMap<>();
+        for (Vessel vessel : vesselRepository.findAll()) {
+            current.put(vessel.getMmsi(), vessel);
+        }
+        //New MMSIs and MMSIs with different static columns. MMSIs no longer in the files are kept (they may have tracks)
+        List<Vessel> changed = new ArrayList<>();
+        for (Vessel vessel : merged) {
+            Vessel existing = current.get(vessel.getMmsi());
+            if (existing == null || !sameStaticData(existing, vessel)) {
+                changed.add(vessel);
+            }
+        }
+        if (!changed.isEmpty()) {
+            bulkLoad(new HashSet<>(changed), true);
+        }
+        saveFingerprints(fingerprints);
+        rebuildSearchIndex();
+        System.out.println(":)) Static data synced: " + changed.size() + " of " + merged.size() + " vessels changed");
+    }
+
+    //Same transaction as the load: the index sees the rows just written (admin edits included)
+    private void rebuildSearchIndex() {
+        vesselSearchIndex.rebuild(vesselJdbcRepository.findSearchFields());
+    }
+
+    private void loadStaticData(boolean upsert) {
+        Set<Vessel> finalVesselSet = buildVesselSet();
+        //Stream the merged set into the vessels table
+        bulkLoad(finalVesselSet, upsert);
+
+        System.out.println(":)) Static vessel database initialization complete!");
+        System.out.println(":)) Final vessel count: " + finalVesselSet.size() + " unique MMSIs");
+    }
+
+    private Set<Vessel> buildVesselSet() {
         System.out.println("🔧 Starting batch processing of static vessel data...");
 
+        long start = System.nanoTime();
+        //The three files are independent: read them at the same time, one thread each
+        ExecutorService loaders = Executors.newFixedThreadPool(3);
         try {
             //Load vessel types, country file, static data file
-            Map<Long, String> vesselTypesMap = loadVesselTypes();
-            Map<Integer, String> countryCodesMap = loadCountryCodesMap();
-            Map<Long, Vessel> staticInfoMap = loadStaticInfo();
+            CompletableFuture<Map<Long, String>> vesselTypes = CompletableFuture.supplyAsync(this::loadVesselTypes, loaders);
+            CompletableFuture<Map<Integer, String>> countryCodes = CompletableFuture.supplyAsync(this::loadCountryCodesMap, loaders);
+            CompletableFuture<Map<Long, Vessel>> staticInfo = CompletableFuture.supplyAsync(this::loadStaticInfo, loaders);
+            CompletableFuture.allOf(vesselTypes, countryCodes, staticInfo).join();
+            Map<Long, String> vesselTypesMap = vesselTypes.join();
+            Map<Integer, String> countryCodesMap = countryCodes.join();
+            Map<Long, Vessel> staticInfoMap = staticInfo.join();
 
             System.out.println("📊 Data loaded and consolidated:");
             System.out.println("   - Unique vessel MMSIs: " + vesselTypesMap.size());
             System.out.println("   - Country codes: " + countryCodesMap.size());
             System.out.println("   - Consolidated static info: " + staticInfoMap.size());
 
-            //Merge all maps into final vessel set, convert in arraylist and save to repository
-            Set<Vessel> finalVesselSet = mergeAllDataIntoVesselSet(vesselTypesMap, countryCodesMap, staticInfoMap);
-            List<Vessel> vesselsList = new ArrayList<>(finalVesselSet);
-            vesselRepository.saveAll(vesselsList); //.saveAll() comes from extends JpaRepository<Vessel, Long>
-
-            System.out.println(":)) Static vessel database initialization complete!");
-            System.out.println(":)) Final vessel count: " + finalVesselSet.size() + " unique MMSIs");
+            //Merge all maps into final vessel set
+            Set<Vessel> merged = mergeAllDataIntoVesselSet(vesselTypesMap, countryCodesMap, staticInfoMap);
+            System.out.printf("⏱️ Static data loaded and merged in %.2f s%n", (System.nanoTime() - start) / 1e9);
+            return merged;
 
         } catch (Exception e) {
-            System.err.println("CRITICAL ERROR during static data batch processing: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("Failed to initialize vessel database", e);
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            System.err.println("CRITICAL ERROR during static data batch processing: " + cause.getMessage());
+            cause.printStackTrace();
+            throw new RuntimeException("Failed to initialize vessel database", cause);
+        } finally {
+            loaders.shutdown();
         }
     }
 
+    private static boolean sameStaticData(Vessel a, Vessel b) {
+        return Objects.equals(a.getVesselType(), b.getVesselType())
+                && Objects.equals(a.getCountry(), b.getCountry())
+                && Objects.equals(a.getName(), b.getName())
+                && Objects.equals(a.getImo(), b.getImo())
+                && Objects.equals(a.getCallsign(), b.getCallsign());
+    }
+
+    //SHA-256 of every static file (classpath), by file name
+    private Map<String, String> computeFingerprints() {
+        Map<String, String> fingerprints = new HashMap<>();
+        for (String file : STATIC_FILES) {
+            try (InputStream is = getClass().getClassLoader().getResourceAsStream(file)) {
+                if (is == null) {
+                    fingerprints.put(file, "missing");
+                    continue;
+                }
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                byte[] buffer = new byte[1 << 16];
+                int n;
+                while ((n = is.read(buffer)) > 0) {
+                    digest.update(buffer, 0, n);
+                }
+                fingerprints.put(file, HexFormat.of().formatHex(digest.digest()));
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to fingerprint " + file, e);
+            }
+        }
+        return fingerprints;
+    }
+
+    private void saveFingerprints(Map<String, String> fingerprints) {
+        LocalDateTime now = LocalDateTime.now();
+        List<StaticDataFingerprint> rows = new ArrayList<>();
+        fingerprints.forEach((file, sha256) -> rows.add(new StaticDataFingerprint(file, sha256, now)));
+        fingerprintRepository.saveAll(rows);
+    }
+
+    //COPY FROM STDIN instead of saveAll(): Vessel has an assigned @Id, so saveAll() does a SELECT before every INSERT
+    //The slow path is chosen up front (not PostgreSQL): once a COPY failed, the transaction of the load is aborted
+    //and saveAll() could not run in it, so a failed COPY fails the whole load (rolled back, nothing half written)
+    private void bulkLoad(Set<Vessel> vessels, boolean upsert) {
+        long start = System.nanoTime();
+        long rows;
+        if (!vesselJdbcRepository.supportsCopy()) {
+            System.err.println("ERROR: COPY not available on this database, loading with saveAll()");
+            vesselRepository.saveAll(new ArrayList<>(vessels)); //.saveAll() comes from extends JpaRepository<Vessel, Long>
+            rows = vessels.size();
+        } else {
+            try {
+                rows = vesselJdbcRepository.copyStaticData(vessels, upsert);
+            } catch (SQLException e) {
+                throw new RuntimeException("COPY bulk load of " + vessels.size() + " vessels failed", e);
+            }
+        }
+        double seconds = Math.max((System.nanoTime() - start) / 1e9, 1e-9);
+        System.out.printf("🚚 Bulk %s of %d vessels in %.2f s (%.0f rows/s)%n",
+                upsert ? "upsert" : "load", rows, seconds, rows / seconds);
+    }
+
     //Take type from vessel_types.csv
     //Returns Map<MMSI, VesselType> with duplicate validation
     private Map<Long, String> loadVesselTypes() {
@@ -67,6 +238,10 @@ public class StaticDataBatchProcessor {
             reader.readNext(); //Skip header
             String[] nextLine;
             int lineNumber = 1; //Start from 1 after header
+            //Bad lines are counted, not printed one by one
+            int duplicates = 0;
+            int invalidMmsis = 0;
+            int shortLines = 0;
 
             while ((nextLine = reader.readNext()) != null) {
                 lineNumber++;
@@ -80,18 +255,22 @@ public class StaticDataBatchProcessor {
                         if (!vesselTypesMap.containsKey(mmsi)) {
                             //Save both MMSI and type
                             vesselTypesMap.put(mmsi, vesselType);
-                        } else System.err.println("ERROR: Dublicate mmsi vessel_types");
+                        } else duplicates++;
 
                     } catch (NumberFormatException e) {
-                        System.err.println("ERROR: Invalid MMSI at line " + lineNumber + ": " + nextLine[0]);
+                        invalidMmsis++;
                     }
                 } else {
-                    System.err.println("ERROR: Insufficient columns at line " + lineNumber + ": " + String.join(",", nextLine));
+                    shortLines++;
                 }
             }
 
-            System.out.println(":) vessel_types.csv validation COMPLETE :)");
+            System.out.println(":) vessel_types.csv validation COMPLETE :) (" + lineNumber + " lines)");
             System.out.println("   - Unique MMSIs with types: " + vesselTypesMap.size());
+            if (duplicates + invalidMmsis + shortLines > 0) {
+                System.err.println("ERROR: vessel_types.csv: " + duplicates + " duplicate MMSIs, " + invalidMmsis
+                        + " invalid MMSIs, " + shortLines + " lines with insufficient columns");
+            }
 
         } catch (Exception e) {
             System.err.println("ERROR: Error loading vessel_types.csv: " + e.getMessage());
@@ -112,6 +291,7 @@ public class StaticDataBatchProcessor {
             }
 
             String[] nextLine;
+            int invalidLines = 0;
 
             while ((nextLine = reader.readNext()) != null) {
                 if (nextLine.length >= 2) {
@@ -120,10 +300,13 @@ public class StaticDataBatchProcessor {
                         String countryName = nextLine[1].trim();
                         countryCodes.put(countryCode, countryName);
                     } catch (NumberFormatException e) {
-                        System.err.println(" Invalid country code line: " + String.join(",", nextLine));
+                        invalidLines++; //e.g. the header
                     }
                 }
             }
+            if (invalidLines > 0) {
+                System.err.println(" MMSI_Country_Codes.csv: " + invalidLines + " invalid country code lines skipped");
+            }
 
         } catch (Exception e) {
             System.err.println(" Error loading MMSI_Country_Codes.csv: " + e.getMessage());
@@ -146,6 +329,7 @@ public class StaticDataBatchProcessor {
             reader.readNext(); //Skip header
             String[] nextLine;
             int recordsProcessed = 0;
+            int invalidMmsis = 0;
 
             while ((nextLine = reader.readNext()) != null) {
                 if (nextLine.length >= 4) { //Need at least mmsi, imo, callsign, shipname
@@ -178,11 +362,14 @@ public class StaticDataBatchProcessor {
                         recordsProcessed++;
 
                     } catch (NumberFormatException e) {
-                        System.err.println(" Invalid MMSI in static data: " + nextLine[0]);
+                        invalidMmsis++;
                     }
                 }
             }
 
+            if (invalidMmsis > 0) {
+                System.err.println(" nari_static.csv: " + invalidMmsis + " records with an invalid MMSI skipped");
+            }
             System.out.println("📄 Processed " + recordsProcessed + " static records into " + consolidatedInfo.size() +
                     " consolidated vessel profiles");
 
@@ -195,78 +382,90 @@ public class StaticDataBatchProcessor {
 
     //Merge all loaded data into final vessel set
     //Final fields: mmsi, imo, callsign, shipname, country, vesselType
+    //Every MMSI is independent, so the merge runs as a parallel stream (scales with cores);
+    //unknown types/countries are counted in LongAdders and reported once at the end
     private Set<Vessel> mergeAllDataIntoVesselSet(Map<Long, String> vesselTypesMap,
                                                   Map<Integer, String> countryCodesMap,
                                                   Map<Long, Vessel> staticInfoMap) {
 
-        Set<Vessel> finalVesselSet = new HashSet<>();
-
         // STEP 1: Get ALL unique MMSIs from both sources
-        Set<Long> allDistinctMmsis = new HashSet<>();
+        Set<Long> allDistinctMmsis = new HashSet<>(vesselTypesMap.size() + staticInfoMap.size());
         allDistinctMmsis.addAll(vesselTypesMap.keySet());        // From vessel_types.csv
         allDistinctMmsis.addAll(staticInfoMap.keySet());         // From nari_static.csv
 
-        //STEP 2: Process ALL distinct MMSIs
-        for (Long mmsi : allDistinctMmsis) {
-
-            //Create vessel with MMSI
-            Vessel vessel = new Vessel();
-            vessel.setMmsi(mmsi);
+        MergeCounts counts = new MergeCounts();
 
-            //Determine which data sources contain this MMSI
-            boolean inVesselTypes = vesselTypesMap.containsKey(mmsi);
-            boolean inStaticInfo = staticInfoMap.containsKey(mmsi);
+        //STEP 2: Process ALL distinct MMSIs (read-only maps, safe to share between the stream's threads)
+        Set<Vessel> finalVesselSet = allDistinctMmsis.parallelStream()
+                .map(mmsi -> mergeVessel(mmsi, vesselTypesMap, countryCodesMap, staticInfoMap, counts))
+                .collect(Collectors.toSet());
 
+        System.out.println("📊 Merged " + finalVesselSet.size() + " vessels:");
+        System.out.println("   - Type 'Unknown' (not in vessel_types.csv): " + counts.unknownType.sum());
+        System.out.println("   - No static info (not in nari_static.csv): " + counts.noStaticInfo.sum());
+        System.out.println("   - Country code not in MMSI_Country_Codes.csv: " + counts.unknownCountryCode.sum());
+        System.out.println("   - MMSI too short to extract a country: " + counts.shortMmsi.sum());
+        return finalVesselSet;
+    }
 
-            //RULE 1: Set vessel type
-            if (inVesselTypes) {
-                String vesselType = vesselTypesMap.get(mmsi);
-                vessel.setVesselType(vesselType);
-            } else {
-                //Vessel is ONLY in staticInfoMap, NOT in vesselTypesMap
-                vessel.setVesselType("Unknown Vessel Type");
-                System.out.println(" Type: 'Unknown' (Not in vessel_types.csv): " + vessel.getMmsi());
-            }
+    private static final class MergeCounts {
+        private final LongAdder unknownType = new LongAdder();
+        private final LongAdder noStaticInfo = new LongAdder();
+        private final LongAdder unknownCountryCode = new LongAdder();
+        private final LongAdder shortMmsi = new LongAdder();
+    }
 
-            //RULE 2: Set static info (name, IMO, callsign)
-            if (inStaticInfo) {
-                Vessel staticInfo = staticInfoMap.get(mmsi);
-                String name = staticInfo.getName() != null ? staticInfo.getName() : "Unknown Vessel Name";
-                String callsign = staticInfo.getCallsign() != null ? staticInfo.getCallsign() : "Unknown Callsign";
+    private Vessel mergeVessel(Long mmsi, Map<Long, String> vesselTypesMap, Map<Integer, String> countryCodesMap,
+                               Map<Long, Vessel> staticInfoMap, MergeCounts counts) {
+        //Create vessel with MMSI
+        Vessel vessel = new Vessel();
+        vessel.setMmsi(mmsi);
+
+        //RULE 1: Set vessel type
+        String vesselType = vesselTypesMap.get(mmsi);
+        if (vesselType != null) {
+            vessel.setVesselType(vesselType);
+        } else {
+            //Vessel is ONLY in staticInfoMap, NOT in vesselTypesMap
+            vessel.setVesselType("Unknown Vessel Type");
+            counts.unknownType.increment();
+        }
 
-                vessel.setName(name);
-                vessel.setImo(staticInfo.getImo());  //Can be null
-                vessel.setCallsign(callsign);
-            } else {
-                //Vessel is ONLY in vesselTypesMap, NOT in staticInfoMap
-                vessel.setName("Unknown Vessel Name");
-                vessel.setImo(null);
-                vessel.setCallsign("Unknown Callsign");
-            }
+        //RULE 2: Set static info (name, IMO, callsign)
+        Vessel staticInfo = staticInfoMap.get(mmsi);
+        if (staticInfo != null) {
+            String name = staticInfo.getName() != null ? staticInfo.getName() : "Unknown Vessel Name";
+            String callsign = staticInfo.getCallsign() != null ? staticInfo.getCallsign() : "Unknown Callsign";
+
+            vessel.setName(name);
+            vessel.setImo(staticInfo.getImo());  //Can be null
+            vessel.setCallsign(callsign);
+        } else {
+            //Vessel is ONLY in vesselTypesMap, NOT in staticInfoMap
+            vessel.setName("Unknown Vessel Name");
+            vessel.setImo(null);
+            vessel.setCallsign("Unknown Callsign");
+            counts.noStaticInfo.increment();
+        }
 
-            //RULE 3: Set country based on MMSI prefix
-            String mmsiStr = mmsi.toString();
-            String country = "Unknown country";
+        //RULE 3: Set country based on MMSI prefix
+        String mmsiStr = mmsi.toString();
+        String country = "Unknown country";
 
-            if (mmsiStr.length() >= 3) {
-                Integer countryCode = Integer.parseInt(mmsiStr.substring(0, 3));
-                if (countryCodesMap.containsKey(countryCode)) {
-                    country = countryCodesMap.get(countryCode);
-                } else {
-                    //3-digit prefix not found in country codes map
-                    System.out.println(" Country code " + countryCode + " NOT FOUND in countryCodesMap");
-                }
-                vessel.setCountry(country);
+        if (mmsiStr.length() >= 3) {
+            Integer countryCode = Integer.parseInt(mmsiStr.substring(0, 3));
+            if (countryCodesMap.containsKey(countryCode)) {
+                country = countryCodesMap.get(countryCode);
             } else {
-                //MMSI has 2 or fewer digits
-                vessel.setCountry(country);
-                System.out.println(" MMSI " + mmsi + " has only " + mmsiStr.length() + " digits - CANNOT extract country");
+                //3-digit prefix not found in country codes map
+                counts.unknownCountryCode.increment();
             }
-
-            finalVesselSet.add(vessel);
+        } else {
+            //MMSI has 2 or fewer digits
+            counts.shortMmsi.increment();
         }
-
-        return finalVesselSet;
+        vessel.setCountry(country);
+        return vessel;
     }
 
     //Helper methods for parsing CSV data safely
@@ -15,10 +15,14 @@ public class TableCleanupService {
 
     private final UserRepository userRepository;
 
-    public TableCleanupService(VesselRepository vesselRepository, VesselPositionHistoryRepository positionHistoryRepository, UserRepository userRepository) {
+    private final PositionHistoryPartitionService historyPartitions;
+
+    public TableCleanupService(VesselRepository vesselRepository, VesselPositionHistoryRepository positionHistoryRepository, UserRepository userRepository,
+                               PositionHistoryPartitionService historyPartitions) {
         this.vesselRepository = vesselRepository;
         this.positionHistoryRepository = positionHistoryRepository;
         this.userRepository = userRepository;
+        this.historyPartitions = historyPartitions;
     }
 
     //🗑️Clean position history table
@@ -26,7 +30,12 @@ public class TableCleanupService {
     public void cleanPositionHistoryTable() {
         try {
             long count = positionHistoryRepository.count();
-            positionHistoryRepository.deleteAll();
+            if (historyPartitions.isEnabled()) {
+                //Dropping the hourly partitions is instant, deleteAll() removes row by row
+                historyPartitions.dropPartitionsBefore(Long.MAX_VALUE);
+            } else {
+                positionHistoryRepository.deleteAll();
+            }
             System.out.println("️🗑️ Cleaned vessel_position_history table: " + count + " records deleted xx");
         } catch (Exception e) {
             System.err.println("ERROR cleaning position history table: " + e.getMessage());
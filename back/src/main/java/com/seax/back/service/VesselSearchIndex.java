@@ -0,0 +1,247 @@
+package com.seax.back.service;
+
+import com.seax.back.model.Vessel;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+//In-memory type-ahead search over vessel name, call sign, IMO and MMSI digits (/api/vessels/search)
+//Two structures per vessel, both case-insensitive:
+//  - a sorted set of "term + \0 + mmsi" (every field, and every word suffix of the name) -> prefix matches
+//  - a trigram -> MMSIs map -> substring matches (what LIKE '%q%' did), verified on the stored fields
+//Results are ranked: exact field > field prefix > word prefix > substring, then shorter names first.
+//Rebuilt by StaticDataBatchProcessor after every static load, kept current by VesselService (admin edits, new MMSIs).
+@Component
+public class VesselSearchIndex {
+
+    private static final char KEY_SEPARATOR = '\0';
+    //Bounds the work of very common queries ("a", "123"): enough candidates to rank, microseconds to collect
+    private static final int MAX_PREFIX_CANDIDATES = 256;
+    private static final int MAX_SUBSTRING_CANDIDATES = 1024;
+
+    private record Entry(long mmsi, String name, String[] fields) {
+    }
+
+    private record Hit(Entry entry, int rank) {
+    }
+
+    private static final Comparator<Hit> RANKING = Comparator
+            .comparingInt(Hit::rank)
+            .thenComparingInt((Hit hit) -> hit.entry().name() == null ? Integer.MAX_VALUE : hit.entry().name().length())
+            .thenComparing(hit -> hit.entry().name() == null ? "" : hit.entry().name())
+            .thenComparingLong(hit -> hit.entry().mmsi());
+
+    //One consistent generation of the index; a rebuild swaps in a new one
+    private static final class Tables {
+        final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+        final ConcurrentSkipListSet<String> prefixes = new ConcurrentSkipListSet<>();
+        final ConcurrentHashMap<String, Set<Long>> trigrams = new ConcurrentHashMap<>();
+    }
+
+    private volatile Tables tables = new Tables();
+
+    //Replace the whole index (static data load)
+    public synchronized void rebuild(Collection<Vessel> vessels) {
+        long start = System.nanoTime();
+        Tables rebuilt = new Tables();
+        for (Vessel vessel : vessels) {
+            add(rebuilt, entryOf(vessel));
+        }
+        tables = rebuilt;
+        System.out.printf("🔎 Vessel search index built: %d vessels, %d trigrams in %.2f s%n",
+                rebuilt.entries.size(), rebuilt.trigrams.size(), (System.nanoTime() - start) / 1e9);
+    }
+
+    //Add or re-index one vessel
+    public synchronized void put(Vessel vessel) {
+        Tables current = tables;
+        Entry previous = current.entries.get(vessel.getMmsi());
+        Entry entry = entryOf(vessel);
+        if (previous != null) {
+            if (Arrays.equals(previous.fields(), entry.fields())) {
+                return;
+            }
+            remove(current, previous);
+        }
+        add(current, entry);
+    }
+
+    public synchronized void remove(Long mmsi) {
+        Tables current = tables;
+        Entry previous = current.entries.get(mmsi);
+        if (previous != null) {
+            remove(current, previous);
+        }
+    }
+
+    public int size() {
+        return tables.entries.size();
+    }
+
+    //MMSIs of the best matches, best first
+    public List<Long> search(String query, int limit) {
+        String q = normalize(query);
+        if (q == null || limit <= 0) {
+            return List.of();
+        }
+        Tables current = tables;
+        Set<Long> candidates = new LinkedHashSet<>();
+
+        //Prefix matches: a range of the sorted term set
+        for (String key : current.prefixes.subSet(q, true, q + Character.MAX_VALUE, true)) {
+            candidates.add(Long.parseLong(key.substring(key.lastIndexOf(KEY_SEPARATOR) + 1)));
+            if (candidates.size() >= MAX_PREFIX_CANDIDATES) {
+                break;
+            }
+        }
+
+        //Substring matches rank below every prefix match: only needed when the prefixes did not fill the page
+        if (candidates.size() < limit && q.length() >= 3) {
+            Set<Long> smallest = null;
+            for (int i = 0; i + 3 <= q.length(); i++) {
+                Set<Long> posting = current.trigrams.get(q.substring(i, i + 3));
+                if (posting == null) {
+                    smallest = Set.of(); //a trigram nobody has: no substring match
+                    break;
+                }
+                if (smallest == null || posting.size() < smallest.size()) {
+                    smallest = posting;
+                }
+            }
+            int added = 0;
+            for (Long mmsi : smallest) {
+                Entry entry = current.entries.get(mmsi);
+                if (entry != null && rank(entry, q) < Integer.MAX_VALUE && candidates.add(mmsi)
+                        && ++added >= MAX_SUBSTRING_CANDIDATES) {
+                    break;
+                }
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>(candidates.size());
+        for (Long mmsi : candidates) {
+            Entry entry = current.entries.get(mmsi);
+            if (entry != null) {
+                int rank = rank(entry, q);
+                if (rank < Integer.MAX_VALUE) {
+                    hits.add(new Hit(entry, rank));
+                }
+            }
+        }
+        hits.sort(RANKING);
+        List<Long> result = new ArrayList<>(Math.min(limit, hits.size()));
+        for (int i = 0; i < hits.size() && i < limit; i++) {
+            result.add(hits.get(i).entry().mmsi());
+        }
+        return result;
+    }
+
+    //0 exact field, 1 field prefix, 2 word prefix, 3 substring, MAX_VALUE no match
+    private static int rank(Entry entry, String q) {
+        int best = Integer.MAX_VALUE;
+        for (String field : entry.fields()) {
+            if (field == null) {
+                continue;
+            }
+            int rank;
+            if (field.equals(q)) {
+                rank = 0;
+            } else if (field.startsWith(q)) {
+                rank = 1;
+            } else if (field.contains(" " + q)) {
+                rank = 2;
+            } else if (field.contains(q)) {
+                rank = 3;
+            } else {
+                continue;
+            }
+            best = Math.min(best, rank);
+        }
+        return best;
+    }
+
+    private static Entry entryOf(Vessel vessel) {
+        String name = normalize(vessel.getName());
+        String[] fields = {
+                name,
+                normalize(vessel.getCallsign()),
+                vessel.getImo() != null ? vessel.getImo().toString() : null,
+                vessel.getMmsi().toString()
+        };
+        return new Entry(vessel.getMmsi(), name, fields);
+    }
+
+    private static void add(Tables tables, Entry entry) {
+        tables.entries.put(entry.mmsi(), entry);
+        for (String term : prefixTerms(entry)) {
+            tables.prefixes.add(term + KEY_SEPARATOR + entry.mmsi());
+        }
+        for (String trigram : trigrams(entry)) {
+            tables.trigrams.computeIfAbsent(trigram, k -> ConcurrentHashMap.newKeySet()).add(entry.mmsi());
+        }
+    }
+
+    private static void remove(Tables tables, Entry entry) {
+        tables.entries.remove(entry.mmsi());
+        for (String term : prefixTerms(entry)) {
+            tables.prefixes.remove(term + KEY_SEPARATOR + entry.mmsi());
+        }
+        for (String trigram : trigrams(entry)) {
+            tables.trigrams.computeIfPresent(trigram, (k, mmsis) -> {
+                mmsis.remove(entry.mmsi());
+                return mmsis.isEmpty() ? null : mmsis;
+            });
+        }
+    }
+
+    //Every field, plus every word suffix of the name ("blue star delos" -> "star delos", "delos")
+    private static Set<String> prefixTerms(Entry entry) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String field : entry.fields()) {
+            if (field != null) {
+                terms.add(field);
+            }
+        }
+        String name = entry.name();
+        if (name != null) {
+            for (int i = name.indexOf(' '); i >= 0; i = name.indexOf(' ', i + 1)) {
+                terms.add(name.substring(i + 1));
+            }
+        }
+        return terms;
+    }
+
+    //Trigrams inside each field (never across two fields)
+    private static Set<String> trigrams(Entry entry) {
+        Set<String> trigrams = new LinkedHashSet<>();
+        for (String field : entry.fields()) {
+            if (field != null) {
+                for (int i = 0; i + 3 <= field.length(); i++) {
+                    trigrams.add(field.substring(i, i + 3));
+                }
+            }
+        }
+        return trigrams;
+    }
+
+    //Lower case, single spaces, no separator characters; null when nothing is left
+    static String normalize(String value) {
+        if (value == null) {
+            return null;
+        }
+        String normalized = value.toLowerCase(Locale.ROOT)
+                .replace(KEY_SEPARATOR, ' ')
+                .trim()
+                .replaceAll("\\s+", " ");
+        return normalized.isEmpty() ? null : normalized;
+    }
+}
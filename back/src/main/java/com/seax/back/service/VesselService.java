@@ -5,18 +5,26 @@ import com.seax.back.model.User;
 import com.seax.back.model.Vessel;
 import com.seax.back.model.VesselPositionHistory;
 import com.seax.back.repository.UserRepository;
+import com.seax.back.repository.VesselJdbcRepository;
 import com.seax.back.repository.VesselPositionHistoryRepository;
 import com.seax.back.repository.VesselRepository;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import com.seax.back.util.AfterCommit;
+import com.seax.back.util.TileClusterIndex;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service //Spring creates only ONE instance and injects it into controllers
 public class VesselService {
@@ -24,11 +32,63 @@ public class VesselService {
     private final VesselRepository vesselRepository;
     private final UserRepository userRepository;
     private final VesselPositionHistoryRepository positionHistoryRepository;
+    private final VesselJdbcRepository vesselJdbcRepository;
+    //Reads and the ingest path are served from here, the vessels table is written behind
+    private final LiveVesselStore liveVesselStore;
+    //Hourly partitions of vessel_position_history
+    private final PositionHistoryPartitionService historyPartitions;
+    //Buffered COPY writer for new history rows
+    private final PositionHistoryWriter historyWriter;
+    //Fleet MMSIs per user for the isInFleet flags
+    private final FleetMembershipCache fleetMembershipCache;
+    //Type-ahead search over name, call sign, IMO and MMSI
+    private final VesselSearchIndex vesselSearchIndex;
+
+    //Map tiles from this zoom on list individual vessels, below it clusters
+    //(clusters exist up to LiveVesselStore.CLUSTER_MAX_ZOOM, so higher values are capped)
+    @Value("${seax.tiles.vessel-min-zoom:10}")
+    private int vesselMinZoom;
+
+    //Tiles deeper than this are refused (~40 m wide)
+    private static final int MAX_TILE_ZOOM = 22;
+
+    //One map tile: clusters when zoomed out, vessels when zoomed in (the other list is empty)
+    public record VesselTile(boolean clustered, List<TileClusterIndex.Cluster> clusters, List<Vessel> vessels) {
+    }
 
-    public VesselService(VesselRepository vesselRepository, UserRepository userRepository, VesselPositionHistoryRepository positionHistoryRepository) {
+    public VesselService(VesselRepository vesselRepository, UserRepository userRepository, VesselPositionHistoryRepository positionHistoryRepository,
+                         VesselJdbcRepository vesselJdbcRepository, LiveVesselStore liveVesselStore,
+                         PositionHistoryPartitionService historyPartitions, PositionHistoryWriter historyWriter,
+                         FleetMembershipCache fleetMembershipCache, VesselSearchIndex vesselSearchIndex) {
         this.vesselRepository = vesselRepository;
         this.userRepository = userRepository;
         this.positionHistoryRepository = positionHistoryRepository;
+        this.vesselJdbcRepository = vesselJdbcRepository;
+        this.liveVesselStore = liveVesselStore;
+        this.historyPartitions = historyPartitions;
+        this.historyWriter = historyWriter;
+        this.fleetMembershipCache = fleetMembershipCache;
+        this.vesselSearchIndex = vesselSearchIndex;
+    }
+
+    //Fill the live store from the vessels table (called once the static data is loaded)
+    public void loadLiveState() {
+        liveVesselStore.loadAll(vesselRepository.findAll());
+    }
+
+    //Write-behind: push the vessels changed since the last run to Postgres in one JDBC batch
+    @Scheduled(fixedDelayString = "${seax.live-state.flush-interval-ms:1000}")
+    public void flushLiveState() {
+        List<Vessel> dirty = liveVesselStore.drainDirty();
+        if (dirty.isEmpty()) {
+            return;
+        }
+        try {
+            vesselJdbcRepository.upsertPositions(dirty);
+        } catch (Exception e) {
+            System.err.println("❌ Failed to flush " + dirty.size() + " vessels to database: " + e.getMessage());
+            liveVesselStore.markDirty(dirty); //retry on the next run
+        }
     }
 
     //Get vessels within rectangular area with optional fleet indication
@@ -40,17 +100,54 @@ public class VesselService {
         double maxLat = Math.max(startY, endY);
 
         //This service just returns the vessels
-        return vesselRepository.findVesselsInArea(minLat, maxLat, minLon, maxLon);
+        return liveVesselStore.inArea(minLat, maxLat, minLon, maxLon);
+    }
+
+    //Delta of the same area since a version from an earlier answer (null = full answer)
+    public LiveVesselStore.AreaDelta getVesselChangesInArea(double startX, double startY, double endX, double endY, Long sinceVersion) {
+        return liveVesselStore.changesInArea(Math.min(startY, endY), Math.max(startY, endY),
+                Math.min(startX, endX), Math.max(startX, endX), sinceVersion);
     }
 
-    //Get vessel by MMSI
+    //Web Mercator tile z/x/y. Throws IllegalArgumentException for a tile that does not exist
+    public VesselTile getVesselTile(int zoom, int tileX, int tileY) {
+        if (zoom < 0 || zoom > MAX_TILE_ZOOM || tileX < 0 || tileY < 0 || tileX >= (1 << zoom) || tileY >= (1 << zoom)) {
+            throw new IllegalArgumentException("No tile " + zoom + "/" + tileX + "/" + tileY);
+        }
+        if (zoom < Math.min(vesselMinZoom, LiveVesselStore.CLUSTER_MAX_ZOOM + 1)) {
+            return new VesselTile(true, liveVesselStore.clustersOfTile(zoom, tileX, tileY), List.of());
+        }
+        double[] bounds = TileClusterIndex.tileBounds(zoom, tileX, tileY);
+        return new VesselTile(false, List.of(), liveVesselStore.inArea(bounds[0], bounds[1], bounds[2], bounds[3]));
+    }
+
+    //Get vessel by MMSI (live snapshot, treat as read-only)
     public Optional<Vessel> getVesselByMmsi(Long mmsi) {
-        return vesselRepository.findByMmsi(mmsi);
+        return liveVesselStore.get(mmsi);
     }
 
-    //Get all vessels with basic info
+    //Get a private copy of the vessel that the caller may modify (admin edits)
+    public Optional<Vessel> getVesselForUpdate(Long mmsi) {
+        return liveVesselStore.get(mmsi).map(Vessel::copy);
+    }
+
+    //Get all vessels with basic info, sorted by name (nulls last, like ORDER BY v.name)
     public List<Vessel> getAllVessels() {
-        return vesselRepository.findAllOrderByName();
+        List<Vessel> vessels = new ArrayList<>(liveVesselStore.size());
+        liveVesselStore.forEachByName(vessels::add);
+        return vessels;
+    }
+
+    //Keyset pagination in name order: the vessels after the cursor (null = first page)
+    //Throws IllegalArgumentException for a malformed cursor
+    public List<Vessel> getVesselsPage(String cursor, int limit) {
+        LiveVesselStore.NameKey after = cursor == null || cursor.isBlank() ? null : LiveVesselStore.NameKey.fromCursor(cursor);
+        return liveVesselStore.pageByName(after, limit);
+    }
+
+    //Streaming: hands every vessel in name order to the action without building a list
+    public void forEachVesselByName(Consumer<Vessel> action) {
+        liveVesselStore.forEachByName(action);
     }
 
     //Get user's fleet vessels
@@ -61,7 +158,7 @@ public class VesselService {
             //LAZY LOADING: Fleet vessels are NOT loaded yet
             User user = userOpt.get(); //extracts the User object
             Set<Vessel> fleetVessels = user.getFleetVessels();
-            return new ArrayList<>(fleetVessels); //triggers the database query!
+            return toLiveSnapshots(fleetVessels); //triggers the database query!
         }
         return List.of(); //Empty list if user not found
     }
@@ -69,7 +166,7 @@ public class VesselService {
     //Add vessel to user's fleet
     @Transactional //If ANY part fails, rollback ALL database changes
     public boolean addVesselToFleet(Long mmsi, Long userId) {
-        Optional<Vessel> vesselOpt = vesselRepository.findByMmsi(mmsi);
+        Optional<Vessel> vesselOpt = findPersistedVessel(mmsi);
         Optional<User> userOpt = userRepository.findById(userId);
 
         if (vesselOpt.isPresent() && userOpt.isPresent()) {
@@ -80,6 +177,7 @@ public class VesselService {
             if (!user.getFleetVessels().contains(vessel)) {
                 user.addVesselToFleet(vessel);  //Add to user's fleet
                 userRepository.save(user);      //Save to database
+                AfterCommit.run(() -> fleetMembershipCache.added(userId, mmsi));
                 return true;  //Success
             }
         }
@@ -89,55 +187,65 @@ public class VesselService {
     //Remove vessel from user's fleet
     @Transactional
     public boolean removeVesselFromFleet(Long mmsi, Long userId) {
-        Optional<Vessel> vesselOpt = vesselRepository.findByMmsi(mmsi);
         Optional<User> userOpt = userRepository.findById(userId);
 
-        if (vesselOpt.isPresent() && userOpt.isPresent()) {
-            Vessel vessel = vesselOpt.get();
+        if (userOpt.isPresent()) {
             User user = userOpt.get();
+            //Taken from the fleet itself: no vessels table lookup (the table is written behind the live state)
+            Optional<Vessel> vesselOpt = user.getFleetVessels().stream()
+                    .filter(fleetVessel -> fleetVessel.getMmsi().equals(mmsi))
+                    .findFirst();
 
-            if (user.hasVesselInFleet(mmsi)) {
-                user.removeVesselFromFleet(vessel);
+            if (vesselOpt.isPresent()) {
+                user.removeVesselFromFleet(vesselOpt.get());
                 userRepository.save(user);
+                AfterCommit.run(() -> fleetMembershipCache.removed(userId, mmsi));
                 return true;
             }
         }
         return false;
     }
 
+    //Fleet rows reference vessels(mmsi), but a vessel that just appeared on the feed is only in the live state
+    //until the next flushLiveState(): write that one vessel now, in the caller's transaction
+    private Optional<Vessel> findPersistedVessel(Long mmsi) {
+        Optional<Vessel> stored = vesselRepository.findByMmsi(mmsi);
+        if (stored.isPresent()) {
+            return stored;
+        }
+        Optional<Vessel> live = liveVesselStore.get(mmsi);
+        if (live.isEmpty()) {
+            return Optional.empty();
+        }
+        vesselJdbcRepository.upsertPositions(List.of(live.get()));
+        return vesselRepository.findByMmsi(mmsi);
+    }
+
     //Check if vessel is in user's fleet
     public boolean isVesselInUserFleet(Long mmsi, Long userId) {
-        Optional<User> userOpt = userRepository.findById(userId);
-        if (userOpt.isPresent()) {
-            User user = userOpt.get();
-            return user.hasVesselInFleet(mmsi);
+        return getFleetMembership(userId).contains(mmsi);
+    }
+
+    //Fleet of the user for a whole response: resolve once, then fleet.contains(mmsi) per vessel
+    //(unknown users simply get an empty fleet)
+    public FleetMembershipCache.Fleet getFleetMembership(Long userId) {
+        if (userId == null) {
+            return FleetMembershipCache.Fleet.EMPTY;
         }
-        return false;
+        return fleetMembershipCache.get(userId, userRepository::findFleetMmsisByUserId);
     }
 
-    //Consumer gives me the dynamic data to update my vessel
-    @Transactional //the vessel update happens completely or not at all
+    //Consumer gives me the dynamic data to update my vessel (in memory only: flushLiveState() writes it)
     public void updateVesselPosition(AisData data) {
 
         System.out.println("🔍 DEBUG: updateVesselPosition called for MMSI: " + data.getSourcemmsi());
         System.out.println("🔍 DEBUG: Position: [" + data.getLat() + ", " + data.getLon() + "]");
         System.out.println("🔍 DEBUG: Timestamp: " + data.getTimestamp());
-        //Only update if vessel exists in our database
-        Optional<Vessel> vesselOpt = vesselRepository.findByMmsi(data.getSourcemmsi());
+        //Only update if vessel exists in our live state (no unknown vessel factory)
+        Vessel vessel = liveVesselStore.applyPosition(data, null);
 
-        if (vesselOpt.isPresent()) {
-            Vessel vessel = vesselOpt.get();
+        if (vessel != null) {
             System.out.println("✅ DEBUG: Found vessel: " + vessel.getName());
-            vessel.setLatitude(data.getLat());
-            vessel.setLongitude(data.getLon());
-            vessel.setSpeedOverGround(data.getSpeedoverground());
-            vessel.setCourseOverGround(data.getSpeedoverground());
-            vessel.setTrueHeading(data.getTrueheading());
-            vessel.setNavigationalStatus(data.getNavigationalstatus());
-            vessel.setRateOfTurn(data.getRateofturn());
-            vessel.setTimestamp(data.getTimestamp());
-
-            vesselRepository.save(vessel);
 
             //Save position history
             try {
@@ -151,10 +259,9 @@ public class VesselService {
                 System.out.println("  Lon: " + positionHistory.getLongitude());
                 System.out.println("  Timestamp: " + positionHistory.getHistoryTimestamp());
 
-                System.out.println("🔍 DEBUG: Saving to database...");
-                VesselPositionHistory saved = positionHistoryRepository.save(positionHistory);
-                System.out.println("✅ DEBUG: Saved position history with ID: " + saved.getId());
-                System.out.println("✅ Saved position history for vessel: " + data.getSourcemmsi());
+                System.out.println("🔍 DEBUG: Queueing for the history writer...");
+                historyWriter.append(List.of(positionHistory));
+                System.out.println("✅ Queued position history for vessel: " + data.getSourcemmsi());
 
             } catch (Exception e) {
                 System.err.println("❌ DEBUG: Failed to save position history!");
@@ -167,10 +274,39 @@ public class VesselService {
         }
     }
 
+    //Register a vessel that is not known yet (unknown MMSI on the feed), written behind like positions
+    public Vessel addLiveVessel(Vessel vessel) {
+        return liveVesselStore.addIfAbsent(vessel);
+    }
+
+    //Batch version of updateVesselPosition for the batch Kafka listener
+    //MMSIs are resolved in the live store (no query), history rows are handed to the buffered writer
+    //Unknown MMSIs are created with unknownVesselFactory. Returns the touched vessels by MMSI
+    public Map<Long, Vessel> updateVesselPositions(List<AisData> batch, Function<Long, Vessel> unknownVesselFactory) {
+        //Reports are applied in poll order; a report older than the stored position is kept as history only
+        Map<Long, Vessel> vessels = new HashMap<>();
+        List<VesselPositionHistory> history = new ArrayList<>(batch.size());
+        //New MMSIs become searchable right away
+        Function<Long, Vessel> indexedFactory = unknownVesselFactory == null ? null : mmsi -> {
+            Vessel created = unknownVesselFactory.apply(mmsi);
+            vesselSearchIndex.put(created);
+            return created;
+        };
+        for (AisData data : batch) {
+            Vessel vessel = liveVesselStore.applyPosition(data, indexedFactory);
+            vessels.put(vessel.getMmsi(), vessel);
+            history.add(new VesselPositionHistory(
+                    data.getSourcemmsi(), data.getLat(), data.getLon(), data.getTimestamp()));
+        }
+
+        historyWriter.append(history);
+        return vessels;
+    }
+
     //Get the 12-hour track for a vessel
     public List<VesselPositionHistory> getVesselTrack(Long mmsi) {
         //Get vessel's latest position timestamp
-        Optional<Vessel> vesselOpt = vesselRepository.findByMmsi(mmsi);
+        Optional<Vessel> vesselOpt = liveVesselStore.get(mmsi);
         if (vesselOpt.isEmpty()) {
             return List.of();
         } //No vessel found
@@ -191,17 +327,11 @@ public class VesselService {
     @Transactional
     public void cleanupOldPositionHistory() {
         try {
-            //Get all vessels that have timestamps (active vessels)
-            List<Vessel> activeVessels = vesselRepository.findActiveVessels();
-            if (activeVessels.isEmpty()) {
-                return;
-            }
-
-            //Find the LATEST timestamp from all vessels (our "current time")
+            //Find the LATEST timestamp from all active vessels (our "current time")
             Long latestTimestamp = null;
-            for (Vessel vessel : activeVessels) {
+            for (Vessel vessel : liveVesselStore.all()) {
                 Long vesselTimestamp = vessel.getTimestamp();
-                if (latestTimestamp == null || vesselTimestamp > latestTimestamp) {
+                if (vesselTimestamp != null && (latestTimestamp == null || vesselTimestamp > latestTimestamp)) {
                     latestTimestamp = vesselTimestamp;
                 }
             }
@@ -210,8 +340,14 @@ public class VesselService {
                 //Calculate 12 hours before our "current time" (latest timestamp)
                 Long cutoffTimestamp = timestamp_before_x_seconds(latestTimestamp, 12 * 3600L);
 
-                //Delete position history records older than 12 hours from latest timestamp
-                positionHistoryRepository.deleteOldPositions(cutoffTimestamp);
+                if (historyPartitions.isEnabled()) {
+                    //Drop the hourly partitions that are entirely older than the cutoff (no row deletes)
+                    int dropped = historyPartitions.dropPartitionsBefore(cutoffTimestamp);
+                    System.out.println("🧹 Dropped " + dropped + " history partitions");
+                } else {
+                    //Delete position history records older than 12 hours from latest timestamp
+                    positionHistoryRepository.deleteOldPositions(cutoffTimestamp);
+                }
 
                 System.out.println("🧹 Cleanup complete: removed data older than " + cutoffTimestamp);
                 System.out.println("🧹 (12 hours before latest timestamp: " + latestTimestamp + ")");
@@ -226,13 +362,27 @@ public class VesselService {
     //Update vessel static data (Admin only)
     @Transactional
     public void updateVesselStaticData(Vessel vessel) {
-        vesselRepository.save(vessel);
+        //Merge with the newest position first, so the row written is never older than the live state
+        Vessel merged = liveVesselStore.updateStaticData(vessel);
+        vesselRepository.save(merged);
+        vesselSearchIndex.put(merged);
         System.out.println("✅ Admin updated vessel " + vessel.getMmsi() + " static data");
     }
 
+    //Type-ahead: best 5 matches from the in-memory search index (no LIKE scan of the vessels table)
     public List<Vessel> searchVessels(String query) {
-        Pageable limit = PageRequest.of(0, 5); //First page, 5 results
-        return vesselRepository.searchVesselsByNameOrMmsi(query, limit);
+        List<Vessel> result = new ArrayList<>();
+        for (Long mmsi : vesselSearchIndex.search(query, 5)) {
+            liveVesselStore.get(mmsi).ifPresent(result::add);
+        }
+        return result;
+    }
+
+    //Rows read from the database may lag behind the live state (write-behind), prefer the live snapshot
+    private List<Vessel> toLiveSnapshots(Collection<Vessel> vessels) {
+        return vessels.stream()
+                .map(vessel -> liveVesselStore.get(vessel.getMmsi()).orElse(vessel))
+                .collect(Collectors.toList());
     }
 
     private Long timestamp_before_x_seconds(Long last_timestamp, Long twelve_hours) {
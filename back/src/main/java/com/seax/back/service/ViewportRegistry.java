@@ -0,0 +1,102 @@
+package com.seax.back.service;
+
+import com.seax.back.model.Viewport;
+import com.seax.back.util.RectangleGridIndex;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Map viewport of every WebSocket session that asked for area-scoped live updates (/app/viewport)
+//Viewports are indexed on a lat/lon grid: finding the sessions that must receive a position
+//reads one grid cell, whatever the number of connected sessions.
+//A viewport crossing the antimeridian is stored as two rectangles (one each side of 180°).
+@Component
+public class ViewportRegistry {
+
+    //Grid cell size in degrees: a harbour view is one cell, a sea view a few hundred;
+    //zoomed-out (world) views go to the side list of RectangleGridIndex
+    private static final double CELL_SIZE_DEGREES = 1.0;
+
+    //Rectangle of one session: part 0, plus part 1 for the east side of an antimeridian viewport
+    private record Part(String sessionId, int part) {
+    }
+
+    private final RectangleGridIndex<Part, String> viewports = new RectangleGridIndex<>(CELL_SIZE_DEGREES);
+    //Rectangles {minLat, maxLat, minLon, maxLon} of every session (one, or two across the antimeridian)
+    private final ConcurrentHashMap<String, List<double[]>> bounds = new ConcurrentHashMap<>();
+
+    //Register or move the viewport of a session
+    public synchronized void update(String sessionId, Viewport viewport) {
+        if (sessionId == null || viewport == null) {
+            throw new IllegalArgumentException("Session and viewport are required");
+        }
+        double south = Math.max(-90, Math.min(viewport.getSouth(), viewport.getNorth()));
+        double north = Math.min(90, Math.max(viewport.getSouth(), viewport.getNorth()));
+        double west = viewport.getWest();
+        double east = viewport.getEast();
+        if (!Double.isFinite(south) || !Double.isFinite(north) || !Double.isFinite(west) || !Double.isFinite(east)) {
+            throw new IllegalArgumentException("Invalid viewport: " + viewport);
+        }
+
+        List<double[]> rectangles;
+        if (Math.abs(east - west) >= 360) {
+            //Zoomed out past one world width
+            rectangles = List.of(new double[]{south, north, -180, 180});
+        } else {
+            //Leaflet keeps counting past ±180 when the map is panned around the globe
+            west = wrapLongitude(west);
+            east = wrapLongitude(east);
+            rectangles = west <= east
+                    ? List.of(new double[]{south, north, west, east})
+                    : List.of(new double[]{south, north, west, 180}, new double[]{south, north, -180, east});
+        }
+        for (int part = 0; part < 2; part++) {
+            if (part < rectangles.size()) {
+                double[] rectangle = rectangles.get(part);
+                viewports.put(new Part(sessionId, part), sessionId, rectangle[0], rectangle[2], rectangle[1], rectangle[3]);
+            } else {
+                viewports.remove(new Part(sessionId, part));
+            }
+        }
+        bounds.put(sessionId, rectangles);
+    }
+
+    public synchronized void remove(String sessionId) {
+        viewports.remove(new Part(sessionId, 0));
+        viewports.remove(new Part(sessionId, 1));
+        bounds.remove(sessionId);
+    }
+
+    //Sessions whose viewport contains the position (edges included)
+    public List<String> sessionsContaining(double lat, double lon) {
+        return viewports.containing(lat, wrapLongitude(lon));
+    }
+
+    //Rectangles {minLat, maxLat, minLon, maxLon} of the session's viewport, empty when it has none
+    public List<double[]> boundsOf(String sessionId) {
+        return bounds.getOrDefault(sessionId, List.of());
+    }
+
+    public boolean isEmpty() {
+        return bounds.isEmpty();
+    }
+
+    //Number of registered sessions
+    public int size() {
+        return bounds.size();
+    }
+
+    public synchronized void clear() {
+        viewports.clear();
+        bounds.clear();
+    }
+
+    //Into [-180, 180], 180 itself kept (east edge of a viewport)
+    static double wrapLongitude(double lon) {
+        if (lon >= -180 && lon <= 180) {
+            return lon;
+        }
+        return ((lon + 180) % 360 + 360) % 360 - 180;
+    }
+}
@@ -7,12 +7,17 @@ import com.seax.back.repository.VesselRepository;
 import com.seax.back.repository.ViolationRepository;
 import com.seax.back.repository.ZoneRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class ViolationService {
@@ -21,18 +26,58 @@ public class ViolationService {
     private final ZoneRepository zoneRepository;
     private final ViolationRepository violationRepository;
     private final SimpMessagingTemplate messagingTemplate;
+    private final ZoneRegistry zoneRegistry;
+    private final ViolationTracker violationTracker;
+    //Cluster fan-out: the user's browser may be connected to another node
+    private final ClusterRelay clusterRelay;
+
+    //true = every consumed position is checked against the in-memory zones (checkPosition)
+    //and the minute sweep below is switched off
+    @Value("${seax.violations.incremental:false}")
+    private boolean incremental;
 
     @Autowired
-    public ViolationService(VesselRepository vesselRepository, ZoneRepository zoneRepository, ViolationRepository violationRepository, SimpMessagingTemplate messagingTemplate) {
+    public ViolationService(VesselRepository vesselRepository, ZoneRepository zoneRepository, ViolationRepository violationRepository,
+                            SimpMessagingTemplate messagingTemplate, ZoneRegistry zoneRegistry, ViolationTracker violationTracker,
+                            ClusterRelay clusterRelay) {
         this.vesselRepository = vesselRepository;
         this.zoneRepository = zoneRepository;
         this.violationRepository = violationRepository;
         this.messagingTemplate = messagingTemplate;
+        this.zoneRegistry = zoneRegistry;
+        this.violationTracker = violationTracker;
+        this.clusterRelay = clusterRelay;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    //Ingest path: check one vessel (its latest position) against the zones that contain it
+    //Cost is one registry lookup per consumed vessel, no database queries
+    public void checkPosition(Vessel vessel) {
+        if (!incremental || vessel == null || vessel.getLatitude() == null || vessel.getLongitude() == null
+                || vessel.getSpeedOverGround() == null) {
+            return;
+        }
+        Set<Long> zoneIds = new HashSet<>();
+        for (Zone zone : zoneRegistry.zonesContaining(vessel.getLatitude(), vessel.getLongitude())) {
+            zoneIds.add(zone.getId());
+            checkViolations(vessel, zone);
+        }
+        //Left a zone (or the zone was deleted): its open violations are over
+        sendCleared(violationTracker.clearOutside(vessel.getMmsi(), zoneIds));
     }
 
     @Scheduled(fixedRate = 60000) // Check for violations every minute
     public void checkAllZonesAndVessels() {
+        //Positions are already checked as they are consumed
+        if (incremental) {
+            return;
+        }
         List<Zone> zones = zoneRepository.findAll();
+        //Zones each vessel was found in, to close the violations of vessels that left a zone
+        Map<Long, Set<Long>> zonesByMmsi = new HashMap<>();
 
         for (Zone zone : zones) {
             double minLat = Math.min(zone.getStartPoint().getLat(), zone.getEndPoint().getLat());
@@ -43,32 +88,44 @@ public class ViolationService {
             List<Vessel> vesselsInZone = vesselRepository.findVesselsInBoundingBox(minLat, maxLat, minLon, maxLon);
 
             for (Vessel vessel : vesselsInZone) {
+                zonesByMmsi.computeIfAbsent(vessel.getMmsi(), k -> new HashSet<>()).add(zone.getId());
                 checkViolations(vessel, zone);
             }
         }
+        sendCleared(violationTracker.clearAllOutside(zonesByMmsi));
     }
 
     private void checkViolations(Vessel vessel, Zone zone) {
         // Check for speed violations
-        if (vessel.getSpeedOverGround() > zone.getSpeedMax()) {
-            createViolation(vessel, zone, "Speed", "Exceeded maximum speed limit");
-        }
-        if (vessel.getSpeedOverGround() < zone.getSpeedMin()) {
-            createViolation(vessel, zone, "Speed", "Below minimum speed limit");
-        }
+        checkRule(vessel, zone, ViolationTracker.Rule.SPEED_MAX, vessel.getSpeedOverGround() > zone.getSpeedMax(),
+                "Speed", "Exceeded maximum speed limit");
+        checkRule(vessel, zone, ViolationTracker.Rule.SPEED_MIN, vessel.getSpeedOverGround() < zone.getSpeedMin(),
+                "Speed", "Below minimum speed limit");
 
         // Check for vessel type violations
-        if (!zone.getTypes().isEmpty() && !zone.getTypes().contains(vessel.getVesselType())) {
-            createViolation(vessel, zone, "Type", "Vessel type not allowed in zone");
-        }
+        checkRule(vessel, zone, ViolationTracker.Rule.TYPE,
+                !zone.getTypes().isEmpty() && !zone.getTypes().contains(vessel.getVesselType()),
+                "Type", "Vessel type not allowed in zone");
 
         // Check for navigational status violations
-        if (!zone.getStatus().isEmpty() && !zone.getStatus().contains(vessel.getNavigationalStatus())) {
-            createViolation(vessel, zone, "Status", "Navigational status not allowed in zone");
+        checkRule(vessel, zone, ViolationTracker.Rule.STATUS,
+                !zone.getStatus().isEmpty() && !zone.getStatus().contains(vessel.getNavigationalStatus()),
+                "Status", "Navigational status not allowed in zone");
+    }
+
+    //Only state changes are reported: a row + message when the breach starts,
+    //the same message again every renotify interval, and a message (no row) when it clears
+    private void checkRule(Vessel vessel, Zone zone, ViolationTracker.Rule rule, boolean breached, String type, String description) {
+        ViolationTracker.Key key = new ViolationTracker.Key(vessel.getMmsi(), zone.getId(), rule);
+        switch (violationTracker.observe(key, breached, System.currentTimeMillis())) {
+            case STARTED -> violationTracker.attach(key, createViolation(vessel, zone, type, description));
+            case RENOTIFY -> notifyUser(violationTracker.violationOf(key));
+            case CLEARED -> sendCleared(violationTracker.close(key));
+            default -> { }
         }
     }
 
-    private void createViolation(Vessel vessel, Zone zone, String type, String description) {
+    private Violation createViolation(Vessel vessel, Zone zone, String type, String description) {
         Violation violation = new Violation(
                 vessel.getMmsi(),
                 vessel.getName(),
@@ -78,10 +135,38 @@ public class ViolationService {
                 zone
         );
         violationRepository.save(violation);
+        notifyUser(violation);
+        return violation;
+    }
 
-        if (zone.getUser() != null) {
-            Long userId = zone.getUser().getId();
+    private void notifyUser(Violation violation) {
+        if (violation != null && violation.getZone() != null && violation.getZone().getUser() != null) {
+            Long userId = violation.getZone().getUser().getId();
             messagingTemplate.convertAndSend("/topic/violations/" + userId, violation);
+            clusterRelay.relay("/topic/violations/" + userId, violation);
+        }
+    }
+
+    //Same id as the original row, description marks it as over. Not stored
+    private void sendCleared(Violation violation) {
+        if (violation == null) {
+            return;
+        }
+        Violation cleared = new Violation(
+                violation.getMmsi(),
+                violation.getVesselName(),
+                violation.getViolationType(),
+                "Cleared: " + violation.getDescription(),
+                LocalDateTime.now(),
+                violation.getZone()
+        );
+        cleared.setId(violation.getId());
+        notifyUser(cleared);
+    }
+
+    private void sendCleared(List<Violation> violations) {
+        for (Violation violation : violations) {
+            sendCleared(violation);
         }
     }
 
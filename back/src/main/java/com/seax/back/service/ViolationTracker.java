@@ -0,0 +1,127 @@
+package com.seax.back.service;
+
+import com.seax.back.model.Violation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Open violations per (vessel, zone, rule)
+//A breach is reported when it starts, again every renotify interval while it lasts, and once when it clears,
+//instead of on every check. State is in memory only: after a restart open breaches are reported once more.
+@Component
+public class ViolationTracker {
+
+    public enum Rule { SPEED_MAX, SPEED_MIN, TYPE, STATUS }
+
+    public enum Transition { NONE, STARTED, RENOTIFY, CLEARED }
+
+    public record Key(long mmsi, Long zoneId, Rule rule) {}
+
+    //One open violation: the row saved when it started and when it was last sent
+    private static class OpenViolation {
+        private volatile Violation violation;
+        private volatile long lastNotifiedMillis;
+
+        OpenViolation(long now) {
+            this.lastNotifiedMillis = now;
+        }
+    }
+
+    //Re-send an ongoing violation after this long (0 = only on start and clear)
+    @Value("${seax.violations.renotify-interval-ms:3600000}")
+    private long renotifyIntervalMs;
+
+    //mmsi -> open violations of that vessel
+    private final ConcurrentHashMap<Long, ConcurrentHashMap<Key, OpenViolation>> open = new ConcurrentHashMap<>();
+
+    //Feed the result of one rule check, get back what has to be reported
+    public Transition observe(Key key, boolean breached, long nowMillis) {
+        ConcurrentHashMap<Key, OpenViolation> vesselViolations = open.get(key.mmsi());
+        OpenViolation current = vesselViolations != null ? vesselViolations.get(key) : null;
+
+        if (breached) {
+            if (current == null) {
+                open.computeIfAbsent(key.mmsi(), k -> new ConcurrentHashMap<>()).put(key, new OpenViolation(nowMillis));
+                return Transition.STARTED;
+            }
+            if (renotifyIntervalMs > 0 && nowMillis - current.lastNotifiedMillis >= renotifyIntervalMs) {
+                current.lastNotifiedMillis = nowMillis;
+                return Transition.RENOTIFY;
+            }
+            return Transition.NONE;
+        }
+
+        //The caller reports the clear and then closes the entry (close)
+        return current == null ? Transition.NONE : Transition.CLEARED;
+    }
+
+    //Forget an open violation, returns its saved row (null if none)
+    public Violation close(Key key) {
+        Violation[] closed = new Violation[1];
+        open.computeIfPresent(key.mmsi(), (k, vesselViolations) -> {
+            OpenViolation removed = vesselViolations.remove(key);
+            if (removed != null) {
+                closed[0] = removed.violation;
+            }
+            return vesselViolations.isEmpty() ? null : vesselViolations;
+        });
+        return closed[0];
+    }
+
+    //Remember the saved row of a started violation (sent again on renotify / clear)
+    public void attach(Key key, Violation violation) {
+        ConcurrentHashMap<Key, OpenViolation> vesselViolations = open.get(key.mmsi());
+        OpenViolation current = vesselViolations != null ? vesselViolations.get(key) : null;
+        if (current != null) {
+            current.violation = violation;
+        }
+    }
+
+    public Violation violationOf(Key key) {
+        ConcurrentHashMap<Key, OpenViolation> vesselViolations = open.get(key.mmsi());
+        OpenViolation current = vesselViolations != null ? vesselViolations.get(key) : null;
+        return current != null ? current.violation : null;
+    }
+
+    //The vessel is no longer inside the other zones (it left them, or they were deleted): close their violations
+    //Returns the saved rows of the closed violations
+    public List<Violation> clearOutside(long mmsi, Set<Long> zoneIds) {
+        ConcurrentHashMap<Key, OpenViolation> vesselViolations = open.get(mmsi);
+        if (vesselViolations == null) {
+            return Collections.emptyList();
+        }
+        List<Violation> cleared = new ArrayList<>();
+        for (Key key : new ArrayList<>(vesselViolations.keySet())) {
+            if (!zoneIds.contains(key.zoneId())) {
+                Violation violation = close(key);
+                if (violation != null) {
+                    cleared.add(violation);
+                }
+            }
+        }
+        return cleared;
+    }
+
+    //Sweep version of clearOutside: zonesByMmsi = zones each vessel was found in during the sweep
+    public List<Violation> clearAllOutside(Map<Long, Set<Long>> zonesByMmsi) {
+        List<Violation> cleared = new ArrayList<>();
+        for (Long mmsi : new ArrayList<>(open.keySet())) {
+            cleared.addAll(clearOutside(mmsi, zonesByMmsi.getOrDefault(mmsi, Collections.emptySet())));
+        }
+        return cleared;
+    }
+
+    public int openCount() {
+        int count = 0;
+        for (ConcurrentHashMap<Key, OpenViolation> vesselViolations : open.values()) {
+            count += vesselViolations.size();
+        }
+        return count;
+    }
+}
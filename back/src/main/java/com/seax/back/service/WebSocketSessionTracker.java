@@ -0,0 +1,146 @@
+package com.seax.back.service;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.user.UserDestinationMessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Open WebSocket sessions and the progress of their live position frames (registered in WebSocketConfig)
+//  - as handler decorator: keeps the session handles, so a slow session can be closed by id
+//  - as client inbound channel interceptor: the /user/queue/ais-data subscriptions of every session. A SUBSCRIBE
+//    counts once the user destination handler registered it with the broker: from then on a frame sent to the
+//    session is routed to it (the broker channel is synchronous), before that it would be dropped silently.
+//  - as client outbound channel interceptor: the sequence number (LIVE_FRAME_HEADER) of the last live frame of
+//    every session the outbound channel handled (written to the socket or to the session send buffer).
+//    A frame copied to several subscriptions of the session acknowledges the same number, never more frames.
+//The STOMP session id (simpSessionId) is the id of the WebSocket session.
+@Component
+public class WebSocketSessionTracker implements WebSocketHandlerDecoratorFactory, ExecutorChannelInterceptor {
+
+    //Set by LivePositionBroadcaster on every viewport frame, kept by the broker on the copies it sends
+    public static final String LIVE_FRAME_HEADER = "seaxLiveFrame";
+
+    private static final class LiveState {
+        private final Set<String> subscriptionIds = ConcurrentHashMap.newKeySet();
+        //Bumped on every SUBSCRIBE/UNSUBSCRIBE of the live destination
+        private final AtomicLong subscriptionChanges = new AtomicLong();
+        private final AtomicLong lastHandledFrame = new AtomicLong();
+    }
+
+    private final ConcurrentHashMap<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LiveState> liveStates = new ConcurrentHashMap<>();
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                sessions.put(session.getId(), session);
+                liveStates.put(session.getId(), new LiveState());
+                super.afterConnectionEstablished(session);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                sessions.remove(session.getId());
+                liveStates.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    //Inbound: an UNSUBSCRIBE stops the live frames right away, before the broker drops the subscription
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.UNSUBSCRIBE) {
+            LiveState state = stateOf(message);
+            String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders());
+            if (state != null && subscriptionId != null && state.subscriptionIds.remove(subscriptionId)) {
+                state.subscriptionChanges.incrementAndGet();
+            }
+        }
+        return message;
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        LiveState state = stateOf(message);
+        if (state == null) {
+            return; //no session, or already closed: nothing is kept
+        }
+        Object frame = message.getHeaders().get(LIVE_FRAME_HEADER);
+        if (frame instanceof Long sequence) {
+            state.lastHandledFrame.accumulateAndGet(sequence, Math::max);
+            return;
+        }
+        //Inbound: the live subscription exists in the broker once the user destination handler is done with it
+        if (ex == null && handler instanceof UserDestinationMessageHandler
+                && SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.SUBSCRIBE
+                && isLiveDestination(SimpMessageHeaderAccessor.getDestination(message.getHeaders()))) {
+            String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders());
+            if (subscriptionId != null && state.subscriptionIds.add(subscriptionId)) {
+                state.subscriptionChanges.incrementAndGet();
+            }
+        }
+    }
+
+    //Sequence number of the last live frame of the session the outbound channel handled, 0 when none
+    public long lastHandledLiveFrame(String sessionId) {
+        LiveState state = liveStates.get(sessionId);
+        return state != null ? state.lastHandledFrame.get() : 0;
+    }
+
+    //True while the broker has at least one /user/queue/ais-data subscription of the session
+    public boolean isSubscribedToLiveFrames(String sessionId) {
+        LiveState state = liveStates.get(sessionId);
+        return state != null && !state.subscriptionIds.isEmpty();
+    }
+
+    //Changes whenever the session subscribes to or unsubscribes from the live destination
+    public long liveSubscriptionChanges(String sessionId) {
+        LiveState state = liveStates.get(sessionId);
+        return state != null ? state.subscriptionChanges.get() : 0;
+    }
+
+    public int openSessions() {
+        return sessions.size();
+    }
+
+    public boolean close(String sessionId, CloseStatus status) {
+        WebSocketSession session = sessions.get(sessionId);
+        if (session == null) {
+            return false;
+        }
+        try {
+            session.close(status);
+            return true;
+        } catch (IOException e) {
+            System.err.println("XXX Failed to close WebSocket session " + sessionId + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private LiveState stateOf(Message<?> message) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        return sessionId != null ? liveStates.get(sessionId) : null;
+    }
+
+    //The client subscribes to /user/queue/ais-data
+    static boolean isLiveDestination(String destination) {
+        return ("/user" + LivePositionBroadcaster.VIEWPORT_DESTINATION).equals(destination);
+    }
+}
@@ -0,0 +1,72 @@
+package com.seax.back.service;
+
+import com.seax.back.model.Zone;
+import com.seax.back.util.RectangleGridIndex;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+//In-memory copy of all active zones, used by the event-driven violation check on the ingest path
+//Kept current by ZoneService (create/update/delete). Stored zones are detached snapshots
+//with their constraint sets already loaded, so they can be read from any thread without a session.
+//Zones are indexed on a lat/lon grid: a position lookup only tests the zones of its grid cell.
+@Component
+public class ZoneRegistry {
+
+    //Grid cell size in degrees (~28 km of latitude); zones are typically a few cells wide
+    private static final double CELL_SIZE_DEGREES = 0.25;
+
+    private final RectangleGridIndex<Long, Zone> zones = new RectangleGridIndex<>(CELL_SIZE_DEGREES);
+
+    //Replace everything (startup)
+    public void reload(Collection<Zone> loadedZones) {
+        zones.clear();
+        for (Zone zone : loadedZones) {
+            put(zone);
+        }
+        System.out.println("🗺️ Zone registry loaded: " + zones.size() + " zones");
+    }
+
+    public void put(Zone zone) {
+        zones.put(zone.getId(), snapshot(zone),
+                zone.getStartPoint().getLat(), zone.getStartPoint().getLon(),
+                zone.getEndPoint().getLat(), zone.getEndPoint().getLon());
+    }
+
+    public void remove(Long zoneId) {
+        zones.remove(zoneId);
+    }
+
+    public Collection<Zone> all() {
+        return zones.values();
+    }
+
+    public Zone get(Long zoneId) {
+        return zones.get(zoneId);
+    }
+
+    public int size() {
+        return zones.size();
+    }
+
+    //Zones whose rectangle contains the position (edges included, like the BETWEEN query)
+    public List<Zone> zonesContaining(double lat, double lon) {
+        return zones.containing(lat, lon);
+    }
+
+    //Detached copy, constraint sets copied out of the (lazy) Hibernate collections
+    private Zone snapshot(Zone zone) {
+        Zone copy = new Zone();
+        copy.setId(zone.getId());
+        copy.setStartPoint(zone.getStartPoint());
+        copy.setEndPoint(zone.getEndPoint());
+        copy.setTypes(zone.getTypes() != null ? new HashSet<>(zone.getTypes()) : new HashSet<>());
+        copy.setStatus(zone.getStatus() != null ? new HashSet<>(zone.getStatus()) : new HashSet<>());
+        copy.setSpeedMax(zone.getSpeedMax());
+        copy.setSpeedMin(zone.getSpeedMin());
+        copy.setUser(zone.getUser());
+        return copy;
+    }
+}
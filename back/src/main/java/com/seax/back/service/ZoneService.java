@@ -4,11 +4,13 @@ import com.seax.back.model.User;
 import com.seax.back.model.Zone;
 import com.seax.back.repository.UserRepository;
 import com.seax.back.repository.ZoneRepository;
+import com.seax.back.util.AfterCommit;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 
+import java.util.List;
 import java.util.Optional;
 
 @Service
@@ -17,11 +19,22 @@ public class ZoneService {
     private final ZoneRepository zoneRepository;
     private final UserRepository userRepository;
     private final SimpMessagingTemplate messagingTemplate;
+    //In-memory zones for the event-driven violation check
+    private final ZoneRegistry zoneRegistry;
 
-    public ZoneService(ZoneRepository zoneRepository, UserRepository userRepository, SimpMessagingTemplate messagingTemplate) {
+    public ZoneService(ZoneRepository zoneRepository, UserRepository userRepository, SimpMessagingTemplate messagingTemplate, ZoneRegistry zoneRegistry) {
         this.zoneRepository = zoneRepository;
         this.userRepository = userRepository;
         this.messagingTemplate = messagingTemplate;
+        this.zoneRegistry = zoneRegistry;
+    }
+
+    //Fill the zone registry from the zones table (startup)
+    @Transactional(readOnly = true)
+    public void loadZoneRegistry() {
+        //Snapshots are taken inside the transaction, so the lazy constraint sets can still be read
+        List<Zone> zones = zoneRepository.findAll();
+        zoneRegistry.reload(zones);
     }
 
     @Transactional
@@ -29,7 +42,7 @@ public class ZoneService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new IllegalStateException("User not found with id: " + userId));
 
-        return zoneRepository.findByUserId(userId)
+        Zone saved = zoneRepository.findByUserId(userId)
             .map(existingZone -> {
                 // Update existing zone
                 existingZone.setStartPoint(newZoneData.getStartPoint());
@@ -45,6 +58,9 @@ public class ZoneService {
                 newZoneData.setUser(user);
                 return zoneRepository.save(newZoneData);
             });
+
+        AfterCommit.run(() -> zoneRegistry.put(saved));
+        return saved;
     }
 
     public Optional<Zone> getZoneByUserId(Long userId) {
@@ -76,6 +92,8 @@ public class ZoneService {
                 
                 // Also explicitly delete the zone to be sure
                 zoneRepository.delete(zone);
+                Long zoneId = zone.getId();
+                AfterCommit.run(() -> zoneRegistry.remove(zoneId));
                 System.out.println("✅ DEBUG: Zone deleted successfully");
                 return true;
             } else {
@@ -88,4 +106,4 @@ public class ZoneService {
             throw new RuntimeException("Failed to delete zone", e);
         }
     }
-}
\ No newline at end of file
+}
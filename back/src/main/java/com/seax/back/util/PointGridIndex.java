@@ -0,0 +1,116 @@
+package com.seax.back.util;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+//Uniform lat/lon grid over moving points (vessel positions), the point counterpart of RectangleGridIndex
+//Every key sits in exactly one cell; moving it inside its cell costs one map lookup.
+//A bounding-box query reads only the cells it overlaps (or, for huge boxes, only the occupied cells),
+//so its cost follows the number of points near the box instead of the total number of points.
+//Candidates are cell-accurate: callers filter them on their exact position.
+//Thread-safe; updates of one key must not run concurrently with each other (callers serialize them per key).
+public class PointGridIndex<K> {
+
+    private final double cellSizeDegrees;
+    private final long columns;
+
+    private final ConcurrentHashMap<K, Long> cellOfKey = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Set<K>> cells = new ConcurrentHashMap<>();
+
+    public PointGridIndex(double cellSizeDegrees) {
+        if (cellSizeDegrees <= 0) {
+            throw new IllegalArgumentException("cellSizeDegrees must be > 0");
+        }
+        this.cellSizeDegrees = cellSizeDegrees;
+        this.columns = (long) Math.ceil(360 / cellSizeDegrees) + 1;
+    }
+
+    //Add or move a point
+    public void put(K key, double lat, double lon) {
+        long cell = cellKey(row(lat), column(lon));
+        Long previous = cellOfKey.put(key, cell);
+        if (previous != null && previous == cell) {
+            return;
+        }
+        //Add inside compute: a concurrent removal cannot drop the set in between
+        cells.compute(cell, (k, cellKeys) -> {
+            Set<K> keys = cellKeys != null ? cellKeys : ConcurrentHashMap.newKeySet();
+            keys.add(key);
+            return keys;
+        });
+        if (previous != null) {
+            removeFromCell(previous, key);
+        }
+    }
+
+    public void remove(K key) {
+        Long previous = cellOfKey.remove(key);
+        if (previous != null) {
+            removeFromCell(previous, key);
+        }
+    }
+
+    //Keys of every point in a cell overlapping the box (edges included, corners in any order)
+    public void candidates(double lat1, double lon1, double lat2, double lon2, Consumer<K> consumer) {
+        int minRow = row(Math.min(lat1, lat2));
+        int maxRow = row(Math.max(lat1, lat2));
+        int minCol = column(Math.min(lon1, lon2));
+        int maxCol = column(Math.max(lon1, lon2));
+
+        long boxCells = (long) (maxRow - minRow + 1) * (maxCol - minCol + 1);
+        if (boxCells > cells.size()) {
+            //Zoomed far out: fewer occupied cells than cells in the box
+            for (Map.Entry<Long, Set<K>> entry : cells.entrySet()) {
+                long cell = entry.getKey();
+                int row = (int) (cell / columns);
+                int col = (int) (cell % columns);
+                if (row >= minRow && row <= maxRow && col >= minCol && col <= maxCol) {
+                    entry.getValue().forEach(consumer);
+                }
+            }
+            return;
+        }
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int col = minCol; col <= maxCol; col++) {
+                Set<K> cellKeys = cells.get(cellKey(row, col));
+                if (cellKeys != null) {
+                    cellKeys.forEach(consumer);
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return cellOfKey.size();
+    }
+
+    public int occupiedCells() {
+        return cells.size();
+    }
+
+    public void clear() {
+        cellOfKey.clear();
+        cells.clear();
+    }
+
+    private void removeFromCell(long cell, K key) {
+        cells.computeIfPresent(cell, (k, cellKeys) -> {
+            cellKeys.remove(key);
+            return cellKeys.isEmpty() ? null : cellKeys;
+        });
+    }
+
+    private int row(double lat) {
+        return (int) Math.floor((Math.max(-90, Math.min(90, lat)) + 90) / cellSizeDegrees);
+    }
+
+    private int column(double lon) {
+        return (int) Math.floor((Math.max(-180, Math.min(180, lon)) + 180) / cellSizeDegrees);
+    }
+
+    private long cellKey(int row, int col) {
+        return row * columns + col;
+    }
+}
@@ -0,0 +1,96 @@
+package com.seax.back.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//Fixed-size ring of (version, key, previous lat/lon) entries, one per change of a moving point
+//Every change gets the next version number, so "what changed since version V" is a scan of the
+//entries V+1..current instead of a comparison of every point. Old entries are overwritten:
+//a reader asking for a version that is no longer in the ring gets -1 and must start over from a full read.
+//Lock-free: writers claim a version with one atomic increment, readers validate each slot (seqlock style).
+public class PositionChangeLog {
+
+    public interface ChangeVisitor {
+        //previousLat/previousLon are NaN when the point did not exist (or had no position) before the change
+        void change(long version, long key, double previousLat, double previousLon);
+    }
+
+    private final int mask;
+    private final AtomicLong version = new AtomicLong();
+    //Versions at or below this one are not in the log any more (reset)
+    private volatile long floor;
+
+    //slotVersions holds -version while the slot is being written, version once it is complete
+    private final AtomicLongArray slotVersions;
+    private final AtomicLongArray keys;
+    private final AtomicLongArray previousLats;
+    private final AtomicLongArray previousLons;
+
+    //capacity is rounded up to a power of two
+    public PositionChangeLog(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be > 0");
+        }
+        int size = Integer.bitCount(capacity) == 1 ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.mask = size - 1;
+        this.slotVersions = new AtomicLongArray(size);
+        this.keys = new AtomicLongArray(size);
+        this.previousLats = new AtomicLongArray(size);
+        this.previousLons = new AtomicLongArray(size);
+    }
+
+    //Newest version handed out (0 = nothing recorded yet)
+    public long version() {
+        return version.get();
+    }
+
+    public long record(long key, Double previousLat, Double previousLon) {
+        long next = version.incrementAndGet();
+        int slot = (int) (next & mask);
+        slotVersions.set(slot, -next);
+        keys.set(slot, key);
+        previousLats.set(slot, Double.doubleToRawLongBits(previousLat != null ? previousLat : Double.NaN));
+        previousLons.set(slot, Double.doubleToRawLongBits(previousLon != null ? previousLon : Double.NaN));
+        slotVersions.set(slot, next);
+        return next;
+    }
+
+    //Visit the changes after sinceVersion in version order. Returns the last version visited
+    //(the caller's next sinceVersion), or -1 when sinceVersion is too old, in the future or from before a reset
+    public long replay(long sinceVersion, ChangeVisitor visitor) {
+        long current = version.get();
+        if (sinceVersion < floor || sinceVersion > current || current - sinceVersion > mask + 1L) {
+            return -1;
+        }
+        long reached = sinceVersion;
+        for (long next = sinceVersion + 1; next <= current; next++) {
+            int slot = (int) (next & mask);
+            long before = slotVersions.get(slot);
+            if (before != next) {
+                if (Math.abs(before) < next || before == -next) {
+                    //Claimed but not written yet: stop, the client gets it on its next call
+                    break;
+                }
+                return -1; //overwritten by a newer lap
+            }
+            long key = keys.get(slot);
+            double lat = Double.longBitsToDouble(previousLats.get(slot));
+            double lon = Double.longBitsToDouble(previousLons.get(slot));
+            if (slotVersions.get(slot) != next) {
+                return -1; //overwritten while we read it
+            }
+            visitor.change(next, key, lat, lon);
+            reached = next;
+        }
+        return reached;
+    }
+
+    //Forget every change recorded so far (versions keep increasing)
+    public void reset() {
+        floor = version.get();
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,167 @@
+package com.seax.back.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Uniform lat/lon grid over axis-aligned rectangles (zones, map viewports, ...)
+//Every rectangle is registered in the cells it overlaps, so a point lookup reads one cell
+//and only tests the few rectangles registered there, however many rectangles exist in total.
+//Rectangles covering too many cells are kept in a small side list and tested on every lookup.
+//Thread-safe: lookups run in parallel with put/remove (a rectangle being moved may be missed by one lookup).
+public class RectangleGridIndex<K, V> {
+
+    //Above this many cells a rectangle is not spread over the grid (e.g. a whole-ocean zone)
+    private static final int MAX_CELLS_PER_ENTRY = 4096;
+
+    private final double cellSizeDegrees;
+    private final long columns;
+
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Set<K>> cells = new ConcurrentHashMap<>();
+    private final Set<K> wideKeys = ConcurrentHashMap.newKeySet();
+
+    private record Entry<V>(V value, double minLat, double minLon, double maxLat, double maxLon,
+                            int minRow, int maxRow, int minCol, int maxCol, boolean wide) {
+
+        boolean contains(double lat, double lon) {
+            return lat >= minLat && lat <= maxLat && lon >= minLon && lon <= maxLon;
+        }
+    }
+
+    public RectangleGridIndex(double cellSizeDegrees) {
+        if (cellSizeDegrees <= 0) {
+            throw new IllegalArgumentException("cellSizeDegrees must be > 0");
+        }
+        this.cellSizeDegrees = cellSizeDegrees;
+        this.columns = (long) Math.ceil(360 / cellSizeDegrees) + 1;
+    }
+
+    //Add or move a rectangle (corners in any order, edges included)
+    public void put(K key, V value, double lat1, double lon1, double lat2, double lon2) {
+        double minLat = Math.min(lat1, lat2);
+        double maxLat = Math.max(lat1, lat2);
+        double minLon = Math.min(lon1, lon2);
+        double maxLon = Math.max(lon1, lon2);
+        int minRow = row(minLat);
+        int maxRow = row(maxLat);
+        int minCol = column(minLon);
+        int maxCol = column(maxLon);
+        boolean wide = (long) (maxRow - minRow + 1) * (maxCol - minCol + 1) > MAX_CELLS_PER_ENTRY;
+
+        Entry<V> entry = new Entry<>(value, minLat, minLon, maxLat, maxLon, minRow, maxRow, minCol, maxCol, wide);
+        Entry<V> previous = entries.put(key, entry);
+        if (previous != null) {
+            unregister(key, previous);
+        }
+        if (wide) {
+            wideKeys.add(key);
+        } else {
+            for (int row = minRow; row <= maxRow; row++) {
+                for (int col = minCol; col <= maxCol; col++) {
+                    //Add inside compute: a concurrent unregister cannot drop the set in between
+                    cells.compute(cellKey(row, col), (k, cellKeys) -> {
+                        Set<K> keys = cellKeys != null ? cellKeys : ConcurrentHashMap.newKeySet();
+                        keys.add(key);
+                        return keys;
+                    });
+                }
+            }
+        }
+    }
+
+    public V remove(K key) {
+        Entry<V> previous = entries.remove(key);
+        if (previous == null) {
+            return null;
+        }
+        unregister(key, previous);
+        return previous.value();
+    }
+
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        return entry != null ? entry.value() : null;
+    }
+
+    //Values of all rectangles containing the point
+    public List<V> containing(double lat, double lon) {
+        List<V> result = new ArrayList<>();
+        Set<K> cellKeys = cells.get(cellKey(row(lat), column(lon)));
+        if (cellKeys != null) {
+            collect(cellKeys, lat, lon, result);
+        }
+        if (!wideKeys.isEmpty()) {
+            collect(wideKeys, lat, lon, result);
+        }
+        return result;
+    }
+
+    public Collection<V> values() {
+        List<V> values = new ArrayList<>(entries.size());
+        for (Entry<V> entry : entries.values()) {
+            values.add(entry.value());
+        }
+        return Collections.unmodifiableList(values);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+        cells.clear();
+        wideKeys.clear();
+    }
+
+    private void collect(Set<K> keys, double lat, double lon, List<V> result) {
+        for (K key : keys) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.contains(lat, lon)) {
+                result.add(entry.value());
+            }
+        }
+    }
+
+    private void unregister(K key, Entry<V> entry) {
+        //Same key put again meanwhile with the same kind of placement: its cells are re-added by put
+        if (entry.wide()) {
+            Entry<V> current = entries.get(key);
+            if (current == null || !current.wide()) {
+                wideKeys.remove(key);
+            }
+            return;
+        }
+        Entry<V> current = entries.get(key);
+        for (int row = entry.minRow(); row <= entry.maxRow(); row++) {
+            for (int col = entry.minCol(); col <= entry.maxCol(); col++) {
+                if (current != null && !current.wide()
+                        && row >= current.minRow() && row <= current.maxRow()
+                        && col >= current.minCol() && col <= current.maxCol()) {
+                    continue;
+                }
+                long cell = cellKey(row, col);
+                cells.computeIfPresent(cell, (k, cellKeys) -> {
+                    cellKeys.remove(key);
+                    return cellKeys.isEmpty() ? null : cellKeys;
+                });
+            }
+        }
+    }
+
+    private int row(double lat) {
+        return (int) Math.floor((Math.max(-90, Math.min(90, lat)) + 90) / cellSizeDegrees);
+    }
+
+    private int column(double lon) {
+        return (int) Math.floor((Math.max(-180, Math.min(180, lon)) + 180) / cellSizeDegrees);
+    }
+
+    private long cellKey(int row, int col) {
+        return row * columns + col;
+    }
+}
@@ -0,0 +1,184 @@
+package com.seax.back.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Point clusters per zoom level of the Web Mercator tile pyramid (z/x/y, 256 px tiles)
+//Every tile is split into 8 x 8 cluster cells (32 px); each cell keeps a count, the sum of the
+//positions (centroid) and a count per type (dominant type). Cells are updated on every move,
+//so reading a tile is at most 64 map lookups whatever the number of points below it.
+//Thread-safe: cells are changed inside ConcurrentHashMap.compute and read under their own lock.
+public class TileClusterIndex {
+
+    //8 x 8 cells per tile
+    public static final int CELL_BITS = 3;
+    private static final double MAX_LATITUDE = 85.05112878;
+
+    public record Cluster(double latitude, double longitude, long count, String dominantType) {
+    }
+
+    private static final class Cell {
+        private long count;
+        private double sumLat;
+        private double sumLon;
+        private final Map<String, Integer> typeCounts = new HashMap<>(4);
+
+        synchronized void add(double lat, double lon, String type, int sign) {
+            count += sign;
+            sumLat += sign * lat;
+            sumLon += sign * lon;
+            typeCounts.merge(type, sign, Integer::sum);
+            typeCounts.remove(type, 0);
+        }
+
+        //Same cell: both halves under one lock, readers never see the point missing
+        synchronized void replace(double previousLat, double previousLon, String previousType,
+                                  double lat, double lon, String type) {
+            if (Objects.equals(previousType, type)) {
+                //Plain move: count and types unchanged
+                sumLat += lat - previousLat;
+                sumLon += lon - previousLon;
+                return;
+            }
+            add(previousLat, previousLon, previousType, -1);
+            add(lat, lon, type, +1);
+        }
+
+        synchronized boolean isEmpty() {
+            return count <= 0;
+        }
+
+        //null when the cell emptied meanwhile
+        synchronized Cluster snapshot() {
+            if (count <= 0) {
+                return null;
+            }
+            String dominant = null;
+            int best = 0;
+            for (Map.Entry<String, Integer> entry : typeCounts.entrySet()) {
+                if (entry.getValue() > best) {
+                    best = entry.getValue();
+                    dominant = entry.getKey();
+                }
+            }
+            return new Cluster(sumLat / count, sumLon / count, count, dominant);
+        }
+    }
+
+    private final int maxZoom;
+    //levels[z]: cells of zoom z, keyed by cell x/y at resolution 2^(z + CELL_BITS)
+    private final List<ConcurrentHashMap<Long, Cell>> levels = new ArrayList<>();
+
+    public TileClusterIndex(int maxZoom) {
+        if (maxZoom < 0 || maxZoom + CELL_BITS > 30) {
+            throw new IllegalArgumentException("maxZoom must be between 0 and " + (30 - CELL_BITS));
+        }
+        this.maxZoom = maxZoom;
+        for (int zoom = 0; zoom <= maxZoom; zoom++) {
+            levels.add(new ConcurrentHashMap<>());
+        }
+    }
+
+    public int maxZoom() {
+        return maxZoom;
+    }
+
+    //Move one point (previous or next position null = the point did not exist / has no position)
+    //Callers serialize the moves of one point, like PointGridIndex
+    public void move(Double previousLat, Double previousLon, String previousType, Double lat, Double lon, String type) {
+        boolean hadPosition = previousLat != null && previousLon != null;
+        boolean hasPosition = lat != null && lon != null;
+        //Projected once, each level only scales and floors
+        double fromX = hadPosition ? mercatorX(previousLon) : 0;
+        double fromY = hadPosition ? mercatorY(previousLat) : 0;
+        double toX = hasPosition ? mercatorX(lon) : 0;
+        double toY = hasPosition ? mercatorY(lat) : 0;
+        for (int zoom = 0; zoom <= maxZoom; zoom++) {
+            ConcurrentHashMap<Long, Cell> cells = levels.get(zoom);
+            int resolution = zoom + CELL_BITS;
+            long from = hadPosition ? cellKey(cell(fromX, resolution), cell(fromY, resolution)) : -1;
+            long to = hasPosition ? cellKey(cell(toX, resolution), cell(toY, resolution)) : -1;
+            if (from == to && from >= 0) {
+                //Same cell (the usual case below the finest zooms): one update
+                cells.compute(from, (k, cell) -> {
+                    Cell updated = cell != null ? cell : new Cell();
+                    updated.replace(previousLat, previousLon, previousType, lat, lon, type);
+                    return updated.isEmpty() ? null : updated;
+                });
+                continue;
+            }
+            if (from >= 0) {
+                cells.computeIfPresent(from, (k, cell) -> {
+                    cell.add(previousLat, previousLon, previousType, -1);
+                    return cell.isEmpty() ? null : cell;
+                });
+            }
+            if (to >= 0) {
+                cells.compute(to, (k, cell) -> {
+                    Cell updated = cell != null ? cell : new Cell();
+                    updated.add(lat, lon, type, +1);
+                    return updated;
+                });
+            }
+        }
+    }
+
+    //Non-empty clusters of tile z/x/y (at most 64)
+    public List<Cluster> clusters(int zoom, int tileX, int tileY) {
+        if (zoom < 0 || zoom > maxZoom) {
+            throw new IllegalArgumentException("No clusters at zoom " + zoom);
+        }
+        ConcurrentHashMap<Long, Cell> cells = levels.get(zoom);
+        int perTile = 1 << CELL_BITS;
+        List<Cluster> clusters = new ArrayList<>();
+        for (int dy = 0; dy < perTile; dy++) {
+            for (int dx = 0; dx < perTile; dx++) {
+                Cell cell = cells.get(cellKey((long) tileX * perTile + dx, (long) tileY * perTile + dy));
+                Cluster cluster = cell != null ? cell.snapshot() : null;
+                if (cluster != null) {
+                    clusters.add(cluster);
+                }
+            }
+        }
+        return clusters;
+    }
+
+    public void clear() {
+        for (ConcurrentHashMap<Long, Cell> cells : levels) {
+            cells.clear();
+        }
+    }
+
+    //Web Mercator tile bounds {minLat, maxLat, minLon, maxLon} of z/x/y
+    public static double[] tileBounds(int zoom, int tileX, int tileY) {
+        double tiles = 1L << zoom;
+        double minLon = tileX / tiles * 360 - 180;
+        double maxLon = (tileX + 1) / tiles * 360 - 180;
+        double maxLat = Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * tileY / tiles))));
+        double minLat = Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * (tileY + 1) / tiles))));
+        return new double[]{minLat, maxLat, minLon, maxLon};
+    }
+
+    //Position on the Web Mercator square, 0..1 from west / from north
+    static double mercatorX(double lon) {
+        return (Math.max(-180, Math.min(180, lon)) + 180) / 360;
+    }
+
+    static double mercatorY(double lat) {
+        double latRad = Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, lat)));
+        return (1 - Math.log(Math.tan(latRad) + 1 / Math.cos(latRad)) / Math.PI) / 2;
+    }
+
+    static long cell(double mercator, int resolution) {
+        long size = 1L << resolution;
+        return Math.max(0, Math.min(size - 1, (long) Math.floor(mercator * size)));
+    }
+
+    private static long cellKey(long x, long y) {
+        return (x << 32) | y;
+    }
+}
@@ -0,0 +1,86 @@
+package com.seax.back.benchmark;
+
+import com.seax.back.model.AisData;
+import com.seax.back.serialization.AisDataDeserializer;
+import com.seax.back.serialization.AisDataSerializer;
+
+import java.util.Map;
+import java.util.Random;
+
+//Compares the json and binary wire formats of the ais-data topic: bytes per message and messages per second
+//Plain main() harness (not run by the test suite):
+//  java -cp target/classes:target/test-classes:<dependency classpath> com.seax.back.benchmark.AisDataSerializationBenchmark [messages]
+public class AisDataSerializationBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        AisData[] sample = sampleMessages(messages);
+
+        System.out.printf("%-8s %12s %16s %16s%n", "format", "bytes/msg", "encode msg/s", "decode msg/s");
+        for (String format : new String[]{AisDataSerializer.JSON, AisDataSerializer.BINARY}) {
+            run(format, sample);
+        }
+    }
+
+    private static void run(String format, AisData[] sample) {
+        AisDataSerializer serializer = new AisDataSerializer();
+        serializer.configure(Map.of(AisDataSerializer.FORMAT_CONFIG_PREFIX + "ais-data", format), false);
+        AisDataDeserializer deserializer = new AisDataDeserializer();
+
+        byte[][] encoded = new byte[sample.length][];
+        long totalBytes = 0;
+        long bestEncodeNanos = Long.MAX_VALUE;
+        long bestDecodeNanos = Long.MAX_VALUE;
+        long checksum = 0;
+
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            totalBytes = 0;
+            for (int i = 0; i < sample.length; i++) {
+                encoded[i] = serializer.serialize("ais-data", sample[i]);
+                totalBytes += encoded[i].length;
+            }
+            long encodeNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (byte[] bytes : encoded) {
+                checksum += deserializer.deserialize("ais-data", bytes).getSourcemmsi();
+            }
+            long decodeNanos = System.nanoTime() - start;
+
+            if (round >= WARMUP_ROUNDS) {
+                bestEncodeNanos = Math.min(bestEncodeNanos, encodeNanos);
+                bestDecodeNanos = Math.min(bestDecodeNanos, decodeNanos);
+            }
+        }
+
+        System.out.printf("%-8s %12.1f %16.0f %16.0f   (checksum %d)%n",
+                format,
+                (double) totalBytes / sample.length,
+                sample.length / (bestEncodeNanos / 1e9),
+                sample.length / (bestDecodeNanos / 1e9),
+                checksum);
+    }
+
+    //Values in the ranges of the NARI dataset (Brest area, seconds since epoch)
+    private static AisData[] sampleMessages(int count) {
+        Random random = new Random(42);
+        AisData[] sample = new AisData[count];
+        for (int i = 0; i < count; i++) {
+            sample[i] = new AisData(
+                    227_000_000L + random.nextInt(1_000_000),
+                    random.nextInt(16),
+                    random.nextInt(255) - 127,
+                    Math.round(random.nextDouble() * 300) / 10.0,
+                    Math.round(random.nextDouble() * 3600) / 10.0,
+                    random.nextInt(360),
+                    -4.5 + random.nextDouble() * 2,
+                    47.5 + random.nextDouble() * 1.5,
+                    1_443_650_400L + i / 50);
+        }
+        return sample;
+    }
+}
@@ -0,0 +1,133 @@
+package com.seax.back.benchmark;
+
+import com.opencsv.CSVReader;
+import com.seax.back.model.AisData;
+import com.seax.back.producer.MappedAisCsvReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Random;
+
+//Rows per second and allocation rate of the old OpenCSV path vs MappedAisCsvReader on nari_dynamic.csv
+//Plain main() harness (not run by the test suite):
+//  java -cp <test classpath> com.seax.back.benchmark.CsvIngestionBenchmark [path/to/nari_dynamic.csv | synthetic row count]
+//Without a file a synthetic CSV with the NARI column layout is generated in the temp folder.
+public class CsvIngestionBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    //Keeps the JIT from discarding the parsed values
+    private static volatile long sink;
+
+    public static void main(String[] args) throws Exception {
+        Path csv;
+        if (args.length > 0 && Files.isRegularFile(Paths.get(args[0]))) {
+            csv = Paths.get(args[0]);
+        } else {
+            int rows = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+            csv = generate(rows);
+        }
+        System.out.println("File: " + csv + " (" + Files.size(csv) / (1024 * 1024) + " MB)");
+        System.out.printf("%-10s %14s %14s %14s%n", "reader", "rows/s", "bytes/row", "MB/s alloc");
+
+        for (int round = 0; round < ROUNDS; round++) {
+            boolean print = round == ROUNDS - 1; //earlier rounds are warmup
+            measure("opencsv", csv, print, CsvIngestionBenchmark::readWithOpenCsv);
+            measure("mapped", csv, print, CsvIngestionBenchmark::readWithMappedReader);
+        }
+    }
+
+    private interface CsvPass {
+        long run(Path csv) throws Exception;
+    }
+
+    private static void measure(String name, Path csv, boolean print, CsvPass pass) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long rows = pass.run(csv);
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        if (print) {
+            double seconds = nanos / 1e9;
+            System.out.printf("%-10s %14.0f %14.1f %14.1f%n",
+                    name, rows / seconds, (double) allocated / rows, allocated / seconds / (1024 * 1024));
+        }
+    }
+
+    //Same parsing as the producer used before MappedAisCsvReader. Returns the number of rows parsed.
+    private static long readWithOpenCsv(Path csv) throws Exception {
+        long rows = 0;
+        long checksum = 0;
+        try (CSVReader reader = new CSVReader(new BufferedReader(new InputStreamReader(Files.newInputStream(csv)), 65536))) {
+            reader.readNext();
+            String[] line;
+            while ((line = reader.readNext()) != null) {
+                try {
+                    AisData data = new AisData(
+                            Long.parseLong(line[0]),
+                            Integer.parseInt(line[1]),
+                            Integer.parseInt(line[2]),
+                            Double.parseDouble(line[3]),
+                            Double.parseDouble(line[4]),
+                            Integer.parseInt(line[5]),
+                            Double.parseDouble(line[6]),
+                            Double.parseDouble(line[7]),
+                            Long.parseLong(line[8]));
+                    checksum += data.getTimestamp();
+                    rows++;
+                } catch (RuntimeException e) {
+                    //skip like the producer
+                }
+            }
+        }
+        sink += checksum;
+        return rows;
+    }
+
+    //Primitives only, no AisData: the producer allocates one per row anyway, this isolates the parsing cost
+    private static long readWithMappedReader(Path csv) throws Exception {
+        long rows = 0;
+        long checksum = 0;
+        try (MappedAisCsvReader reader = MappedAisCsvReader.open(csv.toString(), "nari_dynamic.csv")) {
+            while (reader.next()) {
+                checksum += reader.getTimestamp();
+                rows++;
+            }
+        }
+        sink += checksum;
+        return rows;
+    }
+
+    private static Path generate(int rows) throws IOException {
+        Path csv = Files.createTempFile("nari_dynamic_bench", ".csv");
+        csv.toFile().deleteOnExit();
+        Random random = new Random(7);
+        try (Writer writer = Files.newBufferedWriter(csv)) {
+            writer.write("sourcemmsi,navigationalstatus,rateofturn,speedoverground,courseoverground,trueheading,lon,lat,t\n");
+            for (int i = 0; i < rows; i++) {
+                writer.write(String.format(Locale.ROOT, "%d,%d,%d,%.1f,%.1f,%d,%.7f,%.7f,%d%n",
+                        227_000_000L + random.nextInt(5_000),
+                        random.nextInt(16),
+                        random.nextInt(255) - 127,
+                        random.nextDouble() * 30,
+                        random.nextDouble() * 360,
+                        random.nextInt(360),
+                        -4.5 + random.nextDouble() * 2,
+                        47.5 + random.nextDouble() * 1.5,
+                        1_443_650_400L + i / 20));
+            }
+        }
+        return csv;
+    }
+}
@@ -0,0 +1,138 @@
+package com.seax.back.benchmark;
+
+import com.seax.back.model.Vessel;
+import com.seax.back.service.LiveVesselStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+//Bounding-box query latency of /vessels/positions as the fleet grows: full scan of the live store vs the grid index
+//Plain main() harness (not run by the test suite):
+//  java -cp <test classpath> com.seax.back.benchmark.VesselAreaQueryBenchmark [max fleet size]
+//Vessels are synthetic: 80% clustered around busy coastal areas, 20% spread over the oceans.
+public class VesselAreaQueryBenchmark {
+
+    private static final int[] FLEET_SIZES = {10_000, 100_000, 1_000_000};
+    private static final int QUERIES = 2_000;
+    private static final int ROUNDS = 3;
+
+    //Busy areas (lat, lon): Brest, Piraeus, Rotterdam, Singapore, Gulf of Mexico
+    private static final double[][] HOTSPOTS = {{48.3, -4.6}, {37.9, 23.6}, {51.9, 4.2}, {1.3, 103.8}, {27.0, -90.0}};
+
+    //Viewport sizes in degrees: harbour, regional sea, ocean
+    private static final double[] VIEWPORTS = {0.5, 5.0, 40.0};
+
+    //Keeps the JIT from discarding the query results
+    private static volatile long sink;
+
+    public static void main(String[] args) {
+        int maxFleet = args.length > 0 ? Integer.parseInt(args[0]) : FLEET_SIZES[FLEET_SIZES.length - 1];
+        System.out.printf("%-10s %-9s %10s %12s %12s %12s %12s%n",
+                "vessels", "viewport", "hits", "scan p50 us", "scan p99 us", "index p50 us", "index p99 us");
+
+        for (int fleetSize : FLEET_SIZES) {
+            if (fleetSize > maxFleet) {
+                break;
+            }
+            Random random = new Random(fleetSize);
+            LiveVesselStore store = new LiveVesselStore();
+            store.loadAll(fleet(fleetSize, random));
+
+            for (double viewport : VIEWPORTS) {
+                double[][] boxes = boxes(viewport, random);
+                long[] scan = null;
+                long[] index = null;
+                for (int round = 0; round < ROUNDS; round++) { //earlier rounds are warmup
+                    scan = measure(boxes, box -> scan(store, box));
+                    index = measure(boxes, box -> store.inArea(box[0], box[2], box[1], box[3]).size());
+                }
+                long hits = 0;
+                for (double[] box : boxes) {
+                    hits += store.inArea(box[0], box[2], box[1], box[3]).size();
+                }
+                System.out.printf("%-10d %-9s %10d %12.1f %12.1f %12.1f %12.1f%n",
+                        fleetSize, viewport + "°", hits / boxes.length,
+                        percentile(scan, 50), percentile(scan, 99), percentile(index, 50), percentile(index, 99));
+            }
+        }
+    }
+
+    private interface Query {
+        int run(double[] box);
+    }
+
+    //Per-query latencies in nanoseconds
+    private static long[] measure(double[][] boxes, Query query) {
+        long[] nanos = new long[boxes.length];
+        long hits = 0;
+        for (int i = 0; i < boxes.length; i++) {
+            long start = System.nanoTime();
+            hits += query.run(boxes[i]);
+            nanos[i] = System.nanoTime() - start;
+        }
+        sink += hits;
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    private static double percentile(long[] sortedNanos, int percentile) {
+        int position = Math.min(sortedNanos.length - 1, sortedNanos.length * percentile / 100);
+        return sortedNanos[position] / 1_000.0;
+    }
+
+    //What getVesselsInArea did before the index
+    private static int scan(LiveVesselStore store, double[] box) {
+        List<Vessel> inArea = new ArrayList<>();
+        for (Vessel vessel : store.all()) {
+            Double lat = vessel.getLatitude();
+            Double lon = vessel.getLongitude();
+            if (lat != null && lon != null && lat >= box[0] && lat <= box[2] && lon >= box[1] && lon <= box[3]) {
+                inArea.add(vessel);
+            }
+        }
+        return inArea.size();
+    }
+
+    private static List<Vessel> fleet(int size, Random random) {
+        List<Vessel> vessels = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Vessel vessel = new Vessel(200_000_000L + i, "Cargo");
+            if (random.nextInt(5) > 0) {
+                double[] hotspot = HOTSPOTS[random.nextInt(HOTSPOTS.length)];
+                vessel.setLatitude(clamp(hotspot[0] + random.nextGaussian() * 2, 90));
+                vessel.setLongitude(clamp(hotspot[1] + random.nextGaussian() * 3, 180));
+            } else {
+                vessel.setLatitude(random.nextDouble() * 140 - 70);
+                vessel.setLongitude(random.nextDouble() * 360 - 180);
+            }
+            vessels.add(vessel);
+        }
+        return vessels;
+    }
+
+    //{minLat, minLon, maxLat, maxLon}, half of them centred on a hotspot (where users look)
+    private static double[][] boxes(double size, Random random) {
+        double[][] boxes = new double[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            double lat;
+            double lon;
+            if (random.nextBoolean()) {
+                double[] hotspot = HOTSPOTS[random.nextInt(HOTSPOTS.length)];
+                lat = hotspot[0];
+                lon = hotspot[1];
+            } else {
+                lat = random.nextDouble() * 140 - 70;
+                lon = random.nextDouble() * 360 - 180;
+            }
+            boxes[i] = new double[]{clamp(lat - size / 2, 90), clamp(lon - size / 2, 180),
+                    clamp(lat + size / 2, 90), clamp(lon + size / 2, 180)};
+        }
+        return boxes;
+    }
+
+    private static double clamp(double value, double limit) {
+        return Math.max(-limit, Math.min(limit, value));
+    }
+}
@@ -0,0 +1,23 @@
+package com.seax.back.config;
+
+import com.seax.back.service.WebSocketSessionTracker;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class WebSocketConfigTest {
+
+    @Test
+    void configureMessageBroker_shouldPreservePublishOrder_soDeltasNeverOvertakeTheirSnapshot() {
+        MessageBrokerRegistry registry = new MessageBrokerRegistry(mock(SubscribableChannel.class), mock(MessageChannel.class));
+
+        new WebSocketConfig(mock(WebSocketSessionTracker.class)).configureMessageBroker(registry);
+
+        assertEquals(Boolean.TRUE, ReflectionTestUtils.getField(registry, "preservePublishOrder"));
+    }
+}
@@ -0,0 +1,40 @@
+package com.seax.back.consumer;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.listener.ConsumerSeekAware.ConsumerSeekCallback;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ClusterRelayConsumerTest {
+
+    @Mock
+    private ConsumerSeekCallback callback;
+
+    @InjectMocks
+    private ClusterRelayConsumer consumer;
+
+    @Test
+    void onPartitionsAssigned_shouldSeekToTheEndOnlyOnTheFirstAssignment() {
+        TopicPartition p0 = new TopicPartition("seax-ws-relay", 0);
+        TopicPartition p1 = new TopicPartition("seax-ws-relay", 1);
+
+        consumer.onPartitionsAssigned(Map.of(p0, 10L), callback);
+        verify(callback).seekToEnd(List.of(p0));
+
+        //Rebalance: p0 resumes from its committed offset, only the new p1 skips to the end
+        consumer.onPartitionsAssigned(Map.of(p0, 12L, p1, 5L), callback);
+        verify(callback).seekToEnd(List.of(p1));
+
+        consumer.onPartitionsAssigned(Map.of(p0, 12L, p1, 5L), callback);
+        verifyNoMoreInteractions(callback);
+    }
+}
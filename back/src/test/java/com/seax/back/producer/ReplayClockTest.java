@@ -0,0 +1,80 @@
+package com.seax.back.producer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplayClockTest {
+
+    //Manual clock: sleeping advances it, every wait is recorded
+    private static class ManualClock {
+        long now = 1_000_000L;
+        final List<Long> waits = new ArrayList<>();
+
+        ReplayClock clock(double speedFactor) {
+            return new ReplayClock(speedFactor, () -> now) {
+                @Override
+                void sleep(long nanos) {
+                    waits.add(nanos);
+                    now += nanos;
+                }
+            };
+        }
+    }
+
+    @Test
+    void awaitTick_shouldScaleDataTimeBySpeedFactor() throws Exception {
+        ManualClock time = new ManualClock();
+        ReplayClock clock = time.clock(10);
+
+        clock.awaitTick(100); //first tick: right away
+        clock.awaitTick(110); //10 s of data at 10x
+        clock.awaitTick(130); //20 s more
+
+        assertEquals(List.of(TimeUnit.SECONDS.toNanos(1), TimeUnit.SECONDS.toNanos(2)), time.waits);
+    }
+
+    @Test
+    void awaitTick_shouldAnchorTicksToTheStart_soSendTimeDoesNotDrift() throws Exception {
+        ManualClock time = new ManualClock();
+        ReplayClock clock = time.clock(1);
+
+        clock.awaitTick(100);
+        time.now += TimeUnit.MILLISECONDS.toNanos(300); //sending the first tick took 300 ms
+        clock.awaitTick(101);
+        time.now += TimeUnit.SECONDS.toNanos(5); //a slow tick: the next ones are already late
+        clock.awaitTick(103);
+        clock.awaitTick(110);
+
+        //1 s after the start minus the 300 ms spent, nothing for the late tick, then back on schedule
+        assertEquals(List.of(TimeUnit.MILLISECONDS.toNanos(700), TimeUnit.SECONDS.toNanos(4)), time.waits);
+    }
+
+    @Test
+    void fromSetting_shouldReplayWithoutPauses_forMax() throws Exception {
+        ManualClock time = new ManualClock();
+
+        assertTrue(ReplayClock.fromSetting("max").isUnthrottled());
+        assertTrue(ReplayClock.fromSetting(" MAX ").isUnthrottled());
+        assertTrue(ReplayClock.fromSetting("").isUnthrottled());
+        assertTrue(ReplayClock.fromSetting("0").isUnthrottled());
+        assertEquals(100.0, ReplayClock.fromSetting("100").getSpeedFactor());
+
+        ReplayClock clock = time.clock(0);
+        clock.awaitTick(100);
+        clock.awaitTick(1000);
+        assertTrue(time.waits.isEmpty());
+    }
+
+    @Test
+    void fromSetting_shouldRejectInvalidSpeeds_withTheSettingName() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> ReplayClock.fromSetting("fast"));
+        assertTrue(e.getMessage().contains("seax.replay.speed"));
+        assertThrows(IllegalArgumentException.class, () -> ReplayClock.fromSetting("NaN"));
+        assertThrows(IllegalArgumentException.class, () -> ReplayClock.fromSetting("Infinity"));
+    }
+}
@@ -0,0 +1,41 @@
+package com.seax.back.serialization;
+
+import com.seax.back.model.AisData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AisDataSerializerTest {
+
+    private AisDataSerializer serializer;
+    private AisDataDeserializer deserializer;
+    private AisData data;
+
+    @BeforeEach
+    void setUp() {
+        serializer = new AisDataSerializer();
+        serializer.configure(Map.of(AisDataSerializer.FORMAT_CONFIG_PREFIX + "ais-data", "binary"), false);
+        deserializer = new AisDataDeserializer();
+        data = new AisData(228051000L, 0, -12, 12.3, 271.5, 270, -4.4977, 48.3802, 1443650402L);
+    }
+
+    @Test
+    void binaryTopic_shouldRoundTripWithFixedSize() {
+        byte[] bytes = serializer.serialize("ais-data", data);
+
+        assertEquals(AisDataBinaryCodec.SIZE, bytes.length);
+        assertEquals(data, deserializer.deserialize("ais-data", bytes));
+    }
+
+    @Test
+    void otherTopic_shouldFallBackToJson() {
+        byte[] bytes = serializer.serialize("ais-data-debug", data);
+
+        assertEquals('{', bytes[0]);
+        assertTrue(bytes.length > AisDataBinaryCodec.SIZE);
+        assertEquals(data, deserializer.deserialize("ais-data-debug", bytes));
+    }
+}
@@ -0,0 +1,113 @@
+package com.seax.back.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seax.back.model.AisData;
+import com.seax.back.model.RelayEnvelope;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ClusterRelayTest {
+
+    @Mock
+    private KafkaTemplate<String, String> relayKafkaTemplate;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @InjectMocks
+    private ClusterRelay clusterRelay;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(clusterRelay, "enabled", true);
+        ReflectionTestUtils.setField(clusterRelay, "topic", "seax-ws-relay");
+        ReflectionTestUtils.setField(clusterRelay, "dedupCapacity", 2);
+        ReflectionTestUtils.setField(clusterRelay, "configuredNodeId", "node-a");
+        clusterRelay.init();
+    }
+
+    @Test
+    void relay_shouldPublishAnEnvelopeKeyedByNode() throws Exception {
+        when(relayKafkaTemplate.send(anyString(), anyString(), anyString())).thenReturn(new CompletableFuture<>());
+
+        clusterRelay.relay("/topic/violations/1", Map.of("type", "SPEED"));
+
+        ArgumentCaptor<String> value = ArgumentCaptor.forClass(String.class);
+        verify(relayKafkaTemplate).send(eq("seax-ws-relay"), eq("node-a"), value.capture());
+        RelayEnvelope envelope = objectMapper.readValue(value.getValue(), RelayEnvelope.class);
+        assertEquals("node-a", envelope.getOrigin());
+        assertEquals(RelayEnvelope.MESSAGE, envelope.getKind());
+        assertEquals("/topic/violations/1", envelope.getDestination());
+        assertEquals("{\"type\":\"SPEED\"}", envelope.getPayload());
+        assertEquals(1, clusterRelay.getEnvelopesSent());
+    }
+
+    @Test
+    void relayPositions_shouldSplitLargeWindowsIntoSeveralEnvelopes() {
+        when(relayKafkaTemplate.send(anyString(), anyString(), anyString())).thenReturn(new CompletableFuture<>());
+        List<AisData> reports = new ArrayList<>();
+        for (long mmsi = 1; mmsi <= 2500; mmsi++) {
+            reports.add(new AisData(mmsi, 0, 0, 10.0, 90.0, 90, 23.6, 37.9, 100));
+        }
+
+        clusterRelay.relayPositions(reports);
+
+        verify(relayKafkaTemplate, times(3)).send(eq("seax-ws-relay"), eq("node-a"), anyString());
+    }
+
+    @Test
+    void accept_shouldSkipOwnAndDuplicateEnvelopes() {
+        RelayEnvelope fromB = new RelayEnvelope("node-b:x:1", "node-b", RelayEnvelope.MESSAGE, "/topic/violations/1", "{}");
+
+        assertTrue(clusterRelay.accept(fromB));
+        assertFalse(clusterRelay.accept(fromB)); //redelivered
+        assertFalse(clusterRelay.accept(new RelayEnvelope("node-a:x:1", "node-a", RelayEnvelope.MESSAGE, "/topic/x", "{}")));
+        assertEquals(1, clusterRelay.getEnvelopesDelivered());
+        assertEquals(1, clusterRelay.getDuplicatesSkipped());
+
+        //Bounded memory: the oldest ids are forgotten
+        clusterRelay.accept(new RelayEnvelope("node-b:x:2", "node-b", RelayEnvelope.MESSAGE, "/topic/x", "{}"));
+        clusterRelay.accept(new RelayEnvelope("node-b:x:3", "node-b", RelayEnvelope.MESSAGE, "/topic/x", "{}"));
+        assertTrue(clusterRelay.accept(fromB));
+    }
+
+    @Test
+    void init_shouldRequireANodeId_whenFanOutIsOn() {
+        ReflectionTestUtils.setField(clusterRelay, "configuredNodeId", " ");
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> clusterRelay.init());
+        assertTrue(e.getMessage().contains("seax.cluster.node-id"));
+
+        //Off: no relay consumer group, a fixed name is enough
+        ReflectionTestUtils.setField(clusterRelay, "enabled", false);
+        clusterRelay.init();
+        assertEquals("standalone", clusterRelay.getNodeId());
+    }
+
+    @Test
+    void relay_shouldDoNothingWhenFanOutIsOff() {
+        ReflectionTestUtils.setField(clusterRelay, "enabled", false);
+
+        clusterRelay.relay("/topic/violations/1", Map.of());
+        clusterRelay.relayPositions(List.of(new AisData(1L, 0, 0, 10.0, 90.0, 90, 23.6, 37.9, 100)));
+
+        verifyNoInteractions(relayKafkaTemplate);
+    }
+}
@@ -0,0 +1,48 @@
+package com.seax.back.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FleetMembershipCacheTest {
+
+    private final FleetMembershipCache cache = new FleetMembershipCache();
+
+    @Test
+    void get_shouldLoadOncePerUser() {
+        int[] loads = {0};
+        cache.get(1L, userId -> {
+            loads[0]++;
+            return List.of(30L, 10L, 20L, 10L);
+        });
+        FleetMembershipCache.Fleet fleet = cache.get(1L, userId -> {
+            loads[0]++;
+            return List.of();
+        });
+
+        assertEquals(1, loads[0]);
+        assertEquals(3, fleet.size());
+        assertTrue(fleet.contains(10L));
+        assertTrue(fleet.contains(30L));
+        assertFalse(fleet.contains(15L));
+        assertFalse(fleet.contains(null));
+    }
+
+    @Test
+    void addedAndRemoved_shouldKeepTheFleetSorted_andIgnoreUsersNotCached() {
+        cache.get(1L, userId -> List.of(10L, 30L));
+
+        cache.added(1L, 20L);
+        cache.added(1L, 5L);
+        cache.added(1L, 20L); //already there
+        cache.removed(1L, 30L);
+        cache.added(2L, 99L); //not cached yet: loaded on first use
+
+        FleetMembershipCache.Fleet fleet = cache.get(1L, userId -> List.of());
+        assertArrayEquals(new long[]{5L, 10L, 20L}, fleet.mmsis());
+        assertEquals(1, cache.size());
+        assertFalse(cache.get(2L, userId -> List.of()).contains(99L));
+    }
+}
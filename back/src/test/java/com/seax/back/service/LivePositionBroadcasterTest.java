@@ -0,0 +1,309 @@
+package com.seax.back.service;
+
+import com.seax.back.model.AisData;
+import com.seax.back.model.Vessel;
+import com.seax.back.model.Viewport;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LivePositionBroadcasterTest {
+
+    @Mock
+    private SimpMessagingTemplate template;
+
+    @Spy
+    private ViewportRegistry viewportRegistry = new ViewportRegistry();
+
+    @Spy
+    private LiveVesselStore liveVesselStore = new LiveVesselStore();
+
+    @Mock
+    private WebSocketSessionTracker sessionTracker;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Mock
+    private ClusterRelay clusterRelay;
+
+    @InjectMocks
+    private LivePositionBroadcaster broadcaster;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(broadcaster, "globalFeed", true);
+        ReflectionTestUtils.setField(broadcaster, "maxQueuedVessels", 1000);
+        ReflectionTestUtils.setField(broadcaster, "maxFramesInFlight", 2);
+        ReflectionTestUtils.setField(broadcaster, "maxLagMs", 10000L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_shouldSendOneFrameWithTheLatestReportPerVessel() {
+        broadcaster.publish(report(1L, 37.9, 23.6, 100));
+        broadcaster.publish(report(1L, 37.95, 23.65, 200));
+        broadcaster.publish(report(1L, 37.0, 23.0, 150)); //older: ignored
+        broadcaster.publish(report(2L, 48.0, -5.0, 100));
+
+        broadcaster.flush();
+
+        ArgumentCaptor<Object> frame = ArgumentCaptor.forClass(Object.class);
+        verify(template, times(1)).convertAndSend(eq("/topic/ais-data"), frame.capture());
+        List<AisData> sent = (List<AisData>) frame.getValue();
+        assertEquals(2, sent.size());
+        AisData vessel1 = sent.stream().filter(d -> d.getSourcemmsi() == 1L).findFirst().orElseThrow();
+        assertEquals(200, vessel1.getTimestamp());
+        assertEquals(0, broadcaster.pendingVessels());
+        assertEquals(4, broadcaster.getReportsReceived());
+        assertEquals(2, broadcaster.getReportsSent());
+
+        //Nothing new: no frame
+        broadcaster.flush();
+        verifyNoMoreInteractions(template);
+    }
+
+    @Test
+    void flush_shouldSendEachSessionOnlyTheVesselsInItsViewport() {
+        ReflectionTestUtils.setField(broadcaster, "globalFeed", false);
+        broadcaster.updateViewport("aegean", new Viewport(35.0, 22.0, 41.0, 28.0));
+        broadcaster.updateViewport("brittany", new Viewport(47.0, -6.0, 49.0, -3.0));
+        broadcaster.updateViewport("pacific", new Viewport(-20.0, 170.0, -10.0, -170.0));
+        subscribe("aegean");
+        subscribe("brittany");
+        subscribe("pacific");
+
+        broadcaster.publish(report(1L, 37.9, 23.6, 100));
+        broadcaster.publish(report(2L, 38.5, 25.0, 100));
+        broadcaster.publish(report(3L, 48.0, -5.0, 100));
+
+        broadcaster.flush();
+
+        assertEquals(2, frameTo("aegean").snapshots().size());
+        assertEquals(3L, frameTo("brittany").snapshots().get(0).getSourcemmsi());
+        verify(template, never()).convertAndSendToUser(eq("pacific"), anyString(), any(), any(MessageHeaders.class));
+        verify(template, never()).convertAndSend(anyString(), any(Object.class));
+        assertEquals(2, broadcaster.getFramesSent());
+    }
+
+    @Test
+    void flush_shouldSendOnlyChangedFieldsOfVesselsTheSessionAlreadyKnows() {
+        ReflectionTestUtils.setField(broadcaster, "globalFeed", false);
+        broadcaster.updateViewport("aegean", new Viewport(35.0, 22.0, 41.0, 28.0));
+        subscribe("aegean");
+        broadcaster.publish(report(1L, 37.9, 23.6, 100));
+        broadcaster.flush();
+        clearInvocations(template);
+
+        broadcaster.publish(report(1L, 37.91, 23.6, 110));
+        broadcaster.flush();
+
+        PositionDeltaEncoder.Frame frame = frameTo("aegean");
+        assertTrue(frame.snapshots().isEmpty());
+        assertEquals(Map.of("sourcemmsi", 1L, "lat", 37.91, "timestamp", 110L), frame.deltas().get(0));
+    }
+
+    @Test
+    void resync_shouldSendASnapshotOfTheViewportFromTheLiveState() {
+        ReflectionTestUtils.setField(broadcaster, "globalFeed", false);
+        liveVesselStore.loadAll(List.of(vessel(1L, 37.9, 23.6), vessel(2L, 48.0, -5.0)));
+        broadcaster.updateViewport("aegean", new Viewport(35.0, 22.0, 41.0, 28.0));
+        subscribe("aegean");
+
+        broadcaster.resync("aegean");
+        broadcaster.resync("unknown-session"); //no viewport: nothing sent
+
+        PositionDeltaEncoder.Frame frame = frameTo("aegean");
+        assertEquals(1, frame.snapshots().size());
+        assertEquals("Vessel 1", frame.snapshots().get(0).getName());
+        verify(template, never()).convertAndSendToUser(eq("unknown-session"), anyString(), any(), any(MessageHeaders.class));
+
+        //Closed: no frame any more
+        broadcaster.sessionClosed("aegean");
+        clearInvocations(template);
+        broadcaster.publish(report(1L, 37.91, 23.6, 110));
+        broadcaster.flush();
+        verifyNoInteractions(template);
+    }
+
+    @Test
+    void updateViewport_shouldSendTheStationaryVesselsOfTheNewArea_asSnapshots() {
+        ReflectionTestUtils.setField(broadcaster, "globalFeed", false);
+        //Moored vessels: in the live state, no new report coming
+        liveVesselStore.loadAll(List.of(vessel(1L, 37.9, 23.6), vessel(2L, 48.0, -5.0), vessel(3L, 48.5, -4.0)));
+        broadcaster.updateViewport("map", new Viewport(35.0, 22.0, 41.0, 28.0));
+        subscribe("map");
+        broadcaster.flush();
+        assertEquals(1L, frameTo("map").snapshots().get(0).getSourcemmsi());
+        clearInvocations(template);
+
+        //Panned to Brittany
+        broadcaster.updateViewport("map", new Viewport(47.0, -6.0, 49.0, -3.0));
+
+        PositionDeltaEncoder.Frame frame = frameTo("map");
+        assertEquals(List.of(2L, 3L), frame.snapshots().stream().map(AisData::getSourcemmsi).sorted().toList());
+        assertTrue(frame.deltas().isEmpty());
+    }
+
+    @Test
+    void flush_shouldHoldBackSlowSessions_keepingTheLatestReportPerVessel_andCloseThemPastTheMaxLag() {
+        ReflectionTestUtils.setField(broadcaster, "globalFeed", false);
+        ReflectionTestUtils.setField(broadcaster, "maxFramesInFlight", 1);
+        broadcaster.updateViewport("slow", new Viewport(35.0, 22.0, 41.0, 28.0));
+        subscribe("slow");
+        broadcaster.publish(report(1L, 37.9, 23.6, 100));
+        broadcaster.flush();
+        clearInvocations(template);
+
+        //First frame not handled yet: the next windows wait in the outbox
+        broadcaster.publish(report(1L, 37.91, 23.6, 110));
+        broadcaster.publish(report(2L, 38.5, 25.0, 110));
+        broadcaster.flush();
+        broadcaster.publish(report(1L, 37.92, 23.6, 120));
+        broadcaster.flush();
+        verifyNoInteractions(template);
+        assertEquals(2.0, meterRegistry.get("seax.websocket.session.queued.vessels").tag("session", "slow").gauge().value());
+        assertEquals(1.0, meterRegistry.get("seax.websocket.session.dropped").tag("session", "slow").functionCounter().count());
+
+        //Handled: everything that waited goes out in one frame, vessel 1 with its latest position only
+        when(sessionTracker.lastHandledLiveFrame("slow")).thenReturn(1L); //frame 1
+        broadcaster.flush();
+        PositionDeltaEncoder.Frame frame = frameTo("slow");
+        assertEquals(2L, frame.snapshots().get(0).getSourcemmsi());
+        assertEquals(Map.of("sourcemmsi", 1L, "lat", 37.92, "timestamp", 120L), frame.deltas().get(0));
+
+        //That frame is never handled: past the max lag the session is closed and forgotten
+        ReflectionTestUtils.setField(broadcaster, "maxLagMs", 0L);
+        broadcaster.flush();
+        verify(sessionTracker).close(eq("slow"), any());
+        assertEquals(0, broadcaster.viewportSessions());
+        assertTrue(meterRegistry.find("seax.websocket.session.dropped").tag("session", "slow").meters().isEmpty());
+        assertEquals(1.0, meterRegistry.get("seax.websocket.slow.disconnects").counter().count());
+    }
+
+    @Test
+    void flush_shouldSendNothingBeforeTheSubscribeIsRegistered_norCloseTheSessionAsSlow() {
+        ReflectionTestUtils.setField(broadcaster, "globalFeed", false);
+        ReflectionTestUtils.setField(broadcaster, "maxLagMs", 0L);
+        //The viewport overtook the SUBSCRIBE on the inbound thread pool
+        broadcaster.updateViewport("early", new Viewport(35.0, 22.0, 41.0, 28.0));
+        broadcaster.publish(report(1L, 37.9, 23.6, 100));
+        broadcaster.flush();
+        broadcaster.flush();
+
+        verifyNoInteractions(template);
+        verify(sessionTracker, never()).close(anyString(), any());
+        assertEquals(1, broadcaster.viewportSessions());
+
+        //Subscription registered by the broker: frames go out
+        subscribe("early");
+        broadcaster.publish(report(1L, 37.91, 23.6, 110));
+        broadcaster.flush();
+        assertEquals(37.91, frameTo("early").snapshots().get(0).getLat());
+    }
+
+    @Test
+    void flush_shouldNotWaitForFramesTheBrokerDropped_afterAnUnsubscribe() {
+        ReflectionTestUtils.setField(broadcaster, "globalFeed", false);
+        broadcaster.updateViewport("leaving", new Viewport(35.0, 22.0, 41.0, 28.0));
+        subscribe("leaving");
+        broadcaster.publish(report(1L, 37.9, 23.6, 100));
+        broadcaster.flush();
+        frameTo("leaving");
+
+        //Unsubscribed, viewport kept: frame 1 is never handled, but the session is not slow
+        when(sessionTracker.isSubscribedToLiveFrames("leaving")).thenReturn(false);
+        when(sessionTracker.liveSubscriptionChanges("leaving")).thenReturn(2L);
+        ReflectionTestUtils.setField(broadcaster, "maxLagMs", 0L);
+        clearInvocations(template);
+        broadcaster.publish(report(1L, 37.91, 23.6, 110));
+        broadcaster.flush();
+
+        verifyNoInteractions(template);
+        verify(sessionTracker, never()).close(anyString(), any());
+    }
+
+    @Test
+    void flush_shouldStartOverFromASnapshot_whenTheSessionSubscribesAgain() {
+        ReflectionTestUtils.setField(broadcaster, "globalFeed", false);
+        liveVesselStore.loadAll(List.of(vessel(1L, 37.9, 23.6)));
+        broadcaster.updateViewport("tab", new Viewport(35.0, 22.0, 41.0, 28.0));
+        subscribe("tab");
+
+        //Subscribed: the vessels already in the viewport go out as snapshots
+        broadcaster.flush();
+        assertEquals(1L, frameTo("tab").snapshots().get(0).getSourcemmsi());
+        clearInvocations(template);
+
+        //Subscribed again: what was sent before may have been dropped, no delta refers to it
+        when(sessionTracker.liveSubscriptionChanges("tab")).thenReturn(3L);
+        broadcaster.publish(report(1L, 37.91, 23.6, 110));
+        broadcaster.flush();
+
+        ArgumentCaptor<Object> frames = ArgumentCaptor.forClass(Object.class);
+        verify(template, atLeastOnce()).convertAndSendToUser(eq("tab"), eq("/queue/ais-data"), frames.capture(), any(MessageHeaders.class));
+        PositionDeltaEncoder.Frame first = (PositionDeltaEncoder.Frame) frames.getAllValues().get(0);
+        assertEquals(1L, first.snapshots().get(0).getSourcemmsi());
+        assertTrue(first.deltas().isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_shouldRelayOnlyLocalReports_andBroadcastRelayedOnesLocally() {
+        when(clusterRelay.isEnabled()).thenReturn(true);
+        broadcaster.publish(report(1L, 37.9, 23.6, 100));
+        broadcaster.publishRelayed(List.of(report(2L, 48.0, -5.0, 100)));
+
+        broadcaster.flush();
+
+        ArgumentCaptor<List<AisData>> relayed = ArgumentCaptor.forClass(List.class);
+        verify(clusterRelay).relayPositions(relayed.capture());
+        assertEquals(List.of(1L), relayed.getValue().stream().map(AisData::getSourcemmsi).toList());
+        ArgumentCaptor<Object> frame = ArgumentCaptor.forClass(Object.class);
+        verify(template).convertAndSend(eq("/topic/ais-data"), frame.capture());
+        assertEquals(2, ((List<AisData>) frame.getValue()).size());
+    }
+
+    //The broker registered the /user/queue/ais-data subscription of the session
+    private void subscribe(String sessionId) {
+        lenient().when(sessionTracker.isSubscribedToLiveFrames(sessionId)).thenReturn(true);
+        lenient().when(sessionTracker.liveSubscriptionChanges(sessionId)).thenReturn(1L);
+    }
+
+    private PositionDeltaEncoder.Frame frameTo(String sessionId) {
+        ArgumentCaptor<Object> frame = ArgumentCaptor.forClass(Object.class);
+        verify(template).convertAndSendToUser(eq(sessionId), eq("/queue/ais-data"), frame.capture(), any(MessageHeaders.class));
+        return (PositionDeltaEncoder.Frame) frame.getValue();
+    }
+
+    private static Vessel vessel(long mmsi, double lat, double lon) {
+        Vessel vessel = new Vessel(mmsi, "cargo");
+        vessel.setName("Vessel " + mmsi);
+        vessel.setLatitude(lat);
+        vessel.setLongitude(lon);
+        vessel.setTimestamp(100L);
+        return vessel;
+    }
+
+    private static AisData report(long mmsi, double lat, double lon, long timestamp) {
+        return new AisData(mmsi, 0, 0, 10.0, 90.0, 90, lon, lat, timestamp);
+    }
+}
@@ -0,0 +1,48 @@
+package com.seax.back.service;
+
+import com.seax.back.model.AisData;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PositionDeltaEncoderTest {
+
+    private final PositionDeltaEncoder encoder = new PositionDeltaEncoder();
+
+    @Test
+    void encode_shouldSnapshotNewVessels_thenSendOnlyChangedFields() {
+        PositionDeltaEncoder.Frame first = encoder.encode(List.of(report(1L, 37.9, 23.6, 12.5, 100, "BLUE STAR")));
+        assertEquals(1, first.snapshots().size());
+        assertTrue(first.deltas().isEmpty());
+
+        PositionDeltaEncoder.Frame second = encoder.encode(List.of(report(1L, 37.9, 23.7, 11.0, 110, "BLUE STAR")));
+        assertTrue(second.snapshots().isEmpty());
+        assertEquals(Map.of("sourcemmsi", 1L, "lon", 23.7, "speedoverground", 11.0, "timestamp", 110L),
+                second.deltas().get(0));
+
+        //Same report again: nothing to send
+        assertTrue(encoder.encode(List.of(report(1L, 37.9, 23.7, 11.0, 110, "BLUE STAR"))).isEmpty());
+    }
+
+    @Test
+    void encode_shouldSnapshotAgainWhenStaticDataChanged_orAfterReset() {
+        encoder.encode(List.of(report(1L, 37.9, 23.6, 12.5, 100, "BLUE STAR")));
+
+        PositionDeltaEncoder.Frame renamed = encoder.encode(List.of(report(1L, 37.9, 23.6, 12.5, 110, "BLUE STAR DELOS")));
+        assertEquals("BLUE STAR DELOS", renamed.snapshots().get(0).getName());
+
+        encoder.reset();
+        assertEquals(0, encoder.knownVessels());
+        assertEquals(1, encoder.encode(List.of(report(1L, 37.9, 23.6, 12.5, 120, "BLUE STAR DELOS"))).snapshots().size());
+    }
+
+    private static AisData report(long mmsi, double lat, double lon, double speed, long timestamp, String name) {
+        AisData data = new AisData(mmsi, 0, 0, speed, 90.0, 90, lon, lat, timestamp);
+        data.setName(name);
+        data.setType("passenger");
+        return data;
+    }
+}
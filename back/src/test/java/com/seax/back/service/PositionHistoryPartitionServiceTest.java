@@ -0,0 +1,73 @@
+package com.seax.back.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PositionHistoryPartitionServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private EntityManagerFactory entityManagerFactory;
+
+    @InjectMocks
+    private PositionHistoryPartitionService partitionService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(partitionService, "enabled", true);
+    }
+
+    @Test
+    void partitionName_shouldRoundTripToHour() {
+        long hour = PositionHistoryPartitionService.hourOf(1443650400L); //2015-09-30 22:00:00 UTC
+
+        assertEquals("vessel_position_history_20150930_22", PositionHistoryPartitionService.partitionName(hour));
+        assertEquals(hour, PositionHistoryPartitionService.hourOfPartition("vessel_position_history_20150930_22"));
+        assertNull(PositionHistoryPartitionService.hourOfPartition("vessel_position_history_legacy"));
+    }
+
+    @Test
+    void ensureCovered_shouldCreateEachHourOnlyOnce() {
+        long start = 1443650400L;
+
+        partitionService.ensureCovered(start + 10, start + 3600 + 10); //two hours
+        partitionService.ensureCovered(start + 20, start + 30);        //already there
+
+        verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS vessel_position_history_20150930_22 PARTITION OF vessel_position_history " +
+                "FOR VALUES FROM (1443650400) TO (1443654000)");
+        verify(jdbcTemplate, times(2)).execute(startsWith("CREATE TABLE IF NOT EXISTS"));
+    }
+
+    @Test
+    void dropPartitionsBefore_shouldDropOnlyWholeHoursBeforeCutoff() {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), any()))
+                .thenReturn(List.of("vessel_position_history_20150930_22", "vessel_position_history_20150930_23"));
+
+        int dropped = partitionService.dropPartitionsBefore(1443654000L + 1800); //half way through 23:00
+
+        assertEquals(1, dropped);
+        verify(jdbcTemplate).execute("ALTER TABLE vessel_position_history DETACH PARTITION vessel_position_history_20150930_22");
+        verify(jdbcTemplate).execute("DROP TABLE vessel_position_history_20150930_22");
+        verify(jdbcTemplate, never()).execute(contains("20150930_23"));
+    }
+}
@@ -0,0 +1,111 @@
+package com.seax.back.service;
+
+import com.seax.back.model.VesselPositionHistory;
+import com.seax.back.repository.PgCopyClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedReader;
+import java.io.Reader;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PositionHistoryWriterTest {
+
+    @Mock
+    private PgCopyClient pgCopyClient;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PositionHistoryPartitionService historyPartitions;
+
+    @InjectMocks
+    private PositionHistoryWriter historyWriter;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(historyWriter, "batchSize", 3);
+        ReflectionTestUtils.setField(historyWriter, "maxBuffered", 100);
+    }
+
+    @Test
+    void append_shouldBufferUntilBatchSize_thenCopyAllRows() throws Exception {
+        ArgumentCaptor<Reader> data = ArgumentCaptor.forClass(Reader.class);
+        when(pgCopyClient.isAvailable()).thenReturn(true);
+        when(pgCopyClient.copyIn(startsWith("COPY vessel_position_history"), data.capture())).thenReturn(3L);
+
+        historyWriter.append(List.of(new VesselPositionHistory(1L, 48.1, -4.5, 1000L)));
+        verifyNoInteractions(pgCopyClient);
+
+        historyWriter.append(List.of(
+                new VesselPositionHistory(2L, 48.2, -4.6, 1010L),
+                new VesselPositionHistory(3L, null, null, 1005L)));
+
+        List<String> lines = new BufferedReader(data.getValue()).lines().collect(Collectors.toList());
+        assertEquals(List.of("1,48.1,-4.5,1000", "2,48.2,-4.6,1010", "3,,,1005"), lines);
+        verify(historyPartitions).ensureCovered(1000L, 1010L);
+        assertEquals(0, historyWriter.bufferedRows());
+        assertEquals(3, historyWriter.getRowsWritten());
+    }
+
+    @Test
+    void flush_shouldKeepRowsForRetry_whenCopyFails() throws Exception {
+        when(pgCopyClient.isAvailable()).thenReturn(true);
+        when(pgCopyClient.copyIn(anyString(), any(Reader.class))).thenThrow(new SQLException("connection refused"));
+
+        historyWriter.append(List.of(new VesselPositionHistory(1L, 48.1, -4.5, 1000L)));
+        historyWriter.flush();
+
+        assertEquals(1, historyWriter.bufferedRows());
+        assertEquals(0, historyWriter.getRowsWritten());
+    }
+
+    @Test
+    void shutdown_shouldFlushRemainingRows() throws Exception {
+        when(pgCopyClient.isAvailable()).thenReturn(true);
+        historyWriter.append(List.of(new VesselPositionHistory(1L, 48.1, -4.5, 1000L)));
+
+        historyWriter.shutdown();
+
+        verify(pgCopyClient).copyIn(anyString(), any(Reader.class));
+        assertEquals(0, historyWriter.bufferedRows());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void flush_shouldInsertWithAJdbcBatch_whenCopyIsNotAvailable() throws Exception {
+        when(pgCopyClient.isAvailable()).thenReturn(false);
+        List<VesselPositionHistory> rows = List.of(
+                new VesselPositionHistory(1L, 48.1, -4.5, 1000L),
+                new VesselPositionHistory(2L, 48.2, -4.6, 1010L));
+
+        historyWriter.append(rows);
+        historyWriter.flush();
+        historyWriter.append(List.of(new VesselPositionHistory(3L, 48.3, -4.7, 1020L)));
+        historyWriter.flush();
+
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO vessel_position_history"), eq(rows), eq(2),
+                any(ParameterizedPreparedStatementSetter.class));
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+        verify(pgCopyClient, times(1)).isAvailable(); //checked once
+        verify(pgCopyClient, never()).copyIn(anyString(), any(Reader.class));
+        assertEquals(3, historyWriter.getRowsWritten());
+        assertEquals(0, historyWriter.bufferedRows());
+    }
+}
@@ -0,0 +1,86 @@
+package com.seax.back.service;
+
+import com.seax.back.model.AisData;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionOutboxTest {
+
+    @Test
+    void offer_shouldKeepTheLatestReportPerVessel_andDropTheOldestVesselPastTheBound() {
+        SessionOutbox outbox = new SessionOutbox(2);
+        outbox.offer(List.of(report(1L, 100), report(2L, 100)));
+        outbox.offer(List.of(report(1L, 110))); //superseded: 1 dropped
+        outbox.offer(List.of(report(3L, 110))); //over the bound: vessel 2 (oldest) dropped
+
+        assertEquals(2, outbox.queuedVessels());
+        assertEquals(2, outbox.dropped());
+
+        PositionDeltaEncoder.Frame frame = outbox.nextFrame(0, 1, 0);
+        assertEquals(List.of(1L, 3L), frame.snapshots().stream().map(AisData::getSourcemmsi).toList());
+        assertEquals(110, frame.snapshots().get(0).getTimestamp());
+        assertEquals(0, outbox.queuedVessels());
+    }
+
+    @Test
+    void nextFrame_shouldWaitWhileTooManyFramesAreInFlight_andLagShouldFollowTheOldestOne() {
+        SessionOutbox outbox = new SessionOutbox(100);
+        outbox.offer(List.of(report(1L, 100)));
+        assertNotNull(outbox.nextFrame(0, 1, 1_000));
+
+        outbox.offer(List.of(report(1L, 110)));
+        assertNull(outbox.nextFrame(0, 1, 2_000)); //first frame not handled yet
+        assertEquals(4_000, outbox.lagNanos(0, 5_000));
+        assertEquals(1, outbox.queuedVessels());
+
+        //Handled: the waiting update goes out, the lag restarts from the new frame
+        assertNotNull(outbox.nextFrame(1, 1, 6_000));
+        assertEquals(1_000, outbox.lagNanos(1, 7_000));
+        assertEquals(0, outbox.lagNanos(2, 8_000));
+        assertEquals(0, outbox.framesInFlight());
+    }
+
+    @Test
+    void lagNanos_shouldAcknowledgeEachFrameOnce_andASubscriptionChangeShouldForgetTheFramesInFlight() {
+        SessionOutbox outbox = new SessionOutbox(100);
+        assertTrue(outbox.subscriptionChanged(1, true));
+        assertFalse(outbox.subscriptionChanged(1, true));
+        assertTrue(outbox.isActive());
+        outbox.offer(List.of(report(1L, 100)));
+        outbox.nextFrame(0, 2, 0);
+        outbox.offer(List.of(report(1L, 110)));
+        outbox.nextFrame(0, 2, 500);
+        assertEquals(2, outbox.lastSequence());
+
+        //Frame 1 copied to two subscriptions of the session: handled twice, still only frame 1
+        assertEquals(500, outbox.lagNanos(1, 1_000));
+        assertEquals(500, outbox.lagNanos(1, 1_000));
+        assertEquals(1, outbox.framesInFlight());
+
+        //Unsubscribed: the broker drops frame 2, it is not waited for
+        assertTrue(outbox.subscriptionChanged(2, false));
+        assertFalse(outbox.isActive());
+        assertEquals(0, outbox.framesInFlight());
+        assertEquals(0, outbox.lagNanos(1, 10_000));
+    }
+
+    @Test
+    void snapshot_shouldReplaceWhatWaits() {
+        SessionOutbox outbox = new SessionOutbox(100);
+        outbox.offer(List.of(report(1L, 100)));
+
+        PositionDeltaEncoder.Frame frame = outbox.snapshot(List.of(report(1L, 120), report(2L, 120)), 0);
+
+        assertEquals(2, frame.snapshots().size());
+        assertEquals(0, outbox.queuedVessels());
+        assertEquals(1, outbox.framesInFlight());
+        assertThrows(IllegalArgumentException.class, () -> new SessionOutbox(0));
+    }
+
+    private static AisData report(long mmsi, long timestamp) {
+        return new AisData(mmsi, 0, 0, 10.0, 90.0, 90, 23.6, 37.9, timestamp);
+    }
+}
@@ -0,0 +1,89 @@
+package com.seax.back.service;
+
+import com.seax.back.model.StaticDataFingerprint;
+import com.seax.back.repository.StaticDataFingerprintRepository;
+import com.seax.back.repository.VesselJdbcRepository;
+import com.seax.back.repository.VesselRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StaticDataBatchProcessorSyncTest {
+
+    @Mock
+    private VesselRepository vesselRepository;
+
+    @Mock
+    private VesselJdbcRepository vesselJdbcRepository;
+
+    @Mock
+    private StaticDataFingerprintRepository fingerprintRepository;
+
+    @Mock
+    private VesselSearchIndex vesselSearchIndex;
+
+    @InjectMocks
+    private StaticDataBatchProcessor staticDataBatchProcessor;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void syncStaticData_shouldUpsertChangedVessels_thenSkipWhileFilesAreUnchanged() throws Exception {
+        when(vesselRepository.count()).thenReturn(10L);
+        when(vesselRepository.findAll()).thenReturn(Collections.emptyList());
+        when(fingerprintRepository.findAll()).thenReturn(Collections.emptyList());
+        when(vesselJdbcRepository.supportsCopy()).thenReturn(true);
+        when(vesselJdbcRepository.copyStaticData(anyCollection(), eq(true))).thenReturn(1L);
+
+        //No fingerprints stored yet: every vessel of the files is new
+        staticDataBatchProcessor.syncStaticData();
+
+        verify(vesselJdbcRepository, times(1)).copyStaticData(argThat(vessels -> !vessels.isEmpty()), eq(true));
+        ArgumentCaptor<List<StaticDataFingerprint>> saved = ArgumentCaptor.forClass(List.class);
+        verify(fingerprintRepository).saveAll(saved.capture());
+        assertEquals(3, saved.getValue().size());
+
+        //Same files again: nothing is loaded
+        when(fingerprintRepository.findAll()).thenReturn(saved.getValue());
+        staticDataBatchProcessor.syncStaticData();
+
+        verify(vesselJdbcRepository, times(1)).copyStaticData(anyCollection(), anyBoolean());
+        verify(fingerprintRepository, times(1)).saveAll(anyList());
+        //The search index follows the table after both runs
+        verify(vesselSearchIndex, times(2)).rebuild(anyCollection());
+    }
+
+    @Test
+    void reloadAllStaticData_shouldFailTheLoad_whenCopyFails_withoutFallingBackInTheAbortedTransaction() throws Exception {
+        when(vesselJdbcRepository.supportsCopy()).thenReturn(true);
+        when(vesselJdbcRepository.copyStaticData(anyCollection(), eq(true))).thenThrow(new SQLException("COPY aborted"));
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> staticDataBatchProcessor.reloadAllStaticData());
+
+        assertInstanceOf(SQLException.class, e.getCause());
+        verify(vesselRepository, never()).saveAll(anyList());
+        verify(fingerprintRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void reloadAllStaticData_shouldUseSaveAll_whenCopyIsNotAvailable() throws Exception {
+        when(vesselJdbcRepository.supportsCopy()).thenReturn(false);
+
+        staticDataBatchProcessor.reloadAllStaticData();
+
+        verify(vesselJdbcRepository, never()).copyStaticData(anyCollection(), anyBoolean());
+        verify(vesselRepository).saveAll(argThat(vessels -> vessels.iterator().hasNext()));
+        verify(fingerprintRepository).saveAll(anyList());
+    }
+}
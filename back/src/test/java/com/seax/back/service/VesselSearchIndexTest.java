@@ -0,0 +1,63 @@
+package com.seax.back.service;
+
+import com.seax.back.model.Vessel;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VesselSearchIndexTest {
+
+    private final VesselSearchIndex index = new VesselSearchIndex();
+
+    private static Vessel vessel(long mmsi, String name, String callsign, Long imo) {
+        Vessel vessel = new Vessel(mmsi, "Cargo");
+        vessel.setName(name);
+        vessel.setCallsign(callsign);
+        vessel.setImo(imo);
+        return vessel;
+    }
+
+    @Test
+    void search_shouldRankExactThenPrefixThenWordThenSubstring() {
+        index.rebuild(List.of(
+                vessel(1L, "Blue Star Delos", "SVAB", 9565039L),
+                vessel(2L, "Star", null, null),
+                vessel(3L, "Starlight", null, null),
+                vessel(4L, "Monostar", null, null)));
+
+        assertEquals(List.of(2L, 3L, 1L, 4L), index.search("STAR", 10));
+        assertEquals(List.of(2L, 3L), index.search("star", 2));
+        assertEquals(List.of(1L), index.search("  star   delos ", 10));
+    }
+
+    @Test
+    void search_shouldMatchCallSignImoAndMmsiDigits() {
+        index.rebuild(List.of(
+                vessel(237000123L, "Aegean", "SVAB", 9565039L),
+                vessel(228000100L, "Abeille Bourbon", "FNAB", null)));
+
+        assertEquals(List.of(237000123L), index.search("svab", 5));
+        assertEquals(List.of(237000123L), index.search("565", 5)); //inside the IMO
+        assertEquals(List.of(228000100L), index.search("8000", 5)); //inside the MMSI
+        assertTrue(index.search("zzz", 5).isEmpty());
+        assertTrue(index.search("   ", 5).isEmpty());
+    }
+
+    @Test
+    void put_shouldReindexChangedVessel_andRemoveShouldForgetIt() {
+        index.rebuild(List.of(vessel(1L, "Old Name", null, null)));
+
+        index.put(vessel(1L, "New Name", null, null));
+        index.put(vessel(2L, null, null, null));
+
+        assertTrue(index.search("old", 5).isEmpty());
+        assertEquals(List.of(1L), index.search("new", 5));
+        assertEquals(2, index.size());
+
+        index.remove(1L);
+        assertTrue(index.search("name", 5).isEmpty());
+        assertEquals(1, index.size());
+    }
+}
@@ -1,9 +1,11 @@
 package com.seax.back.service;
 
+import com.seax.back.model.AisData;
 import com.seax.back.model.User;
 import com.seax.back.model.Vessel;
 import com.seax.back.model.VesselPositionHistory;
 import com.seax.back.repository.UserRepository;
+import com.seax.back.repository.VesselJdbcRepository;
 import com.seax.back.repository.VesselPositionHistoryRepository;
 import com.seax.back.repository.VesselRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,9 +13,12 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -31,6 +36,24 @@ class VesselServiceTest {
     @Mock
     private VesselPositionHistoryRepository positionHistoryRepository;
 
+    @Mock
+    private VesselJdbcRepository vesselJdbcRepository;
+
+    @Spy
+    private LiveVesselStore liveVesselStore = new LiveVesselStore();
+
+    @Mock
+    private PositionHistoryPartitionService historyPartitions;
+
+    @Mock
+    private PositionHistoryWriter historyWriter;
+
+    @Spy
+    private FleetMembershipCache fleetMembershipCache = new FleetMembershipCache();
+
+    @Spy
+    private VesselSearchIndex vesselSearchIndex = new VesselSearchIndex();
+
     @InjectMocks
     private VesselService vesselService;
 
@@ -50,7 +73,7 @@ class VesselServiceTest {
 
     @Test
     void testGetVesselByMmsi() {
-        when(vesselRepository.findByMmsi(123456789L)).thenReturn(Optional.of(vessel));
+        liveVesselStore.loadAll(List.of(vessel));
 
         Optional<Vessel> result = vesselService.getVesselByMmsi(123456789L);
 
@@ -60,7 +83,7 @@ class VesselServiceTest {
 
     @Test
     void testGetAllVessels() {
-        when(vesselRepository.findAllOrderByName()).thenReturn(List.of(vessel));
+        liveVesselStore.loadAll(List.of(vessel));
 
         List<Vessel> result = vesselService.getAllVessels();
 
@@ -69,6 +92,42 @@ class VesselServiceTest {
         assertEquals("Test Vessel", result.get(0).getName());
     }
 
+    @Test
+    void testGetVesselsPageWalksNameOrderWithCursor() {
+        Vessel alpha = new Vessel(300L, "Cargo");
+        alpha.setName("Alpha");
+        Vessel alphaTwin = new Vessel(100L, "Cargo");
+        alphaTwin.setName("Alpha");
+        Vessel unnamed = new Vessel(200L, "Cargo");
+        liveVesselStore.loadAll(List.of(unnamed, vessel, alpha, alphaTwin));
+
+        List<Vessel> first = vesselService.getVesselsPage(null, 2);
+        assertEquals(List.of(100L, 300L), first.stream().map(Vessel::getMmsi).toList());
+
+        String cursor = LiveVesselStore.NameKey.of(first.get(1)).toCursor();
+        List<Vessel> rest = vesselService.getVesselsPage(cursor, 10);
+        //Names sort before missing names, equal names by MMSI
+        assertEquals(List.of(123456789L, 200L), rest.stream().map(Vessel::getMmsi).toList());
+
+        String lastCursor = LiveVesselStore.NameKey.of(rest.get(1)).toCursor();
+        assertTrue(vesselService.getVesselsPage(lastCursor, 10).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> vesselService.getVesselsPage("not-a-cursor", 10));
+    }
+
+    @Test
+    void testVesselListFollowsRenames() {
+        liveVesselStore.loadAll(List.of(vessel));
+        Vessel renamed = vessel.copy();
+        renamed.setName("Aaa Vessel");
+        Vessel other = new Vessel(5L, "Cargo");
+        other.setName("Bbb Vessel");
+        liveVesselStore.addIfAbsent(other);
+
+        vesselService.updateVesselStaticData(renamed);
+
+        assertEquals(List.of(123456789L, 5L), vesselService.getAllVessels().stream().map(Vessel::getMmsi).toList());
+    }
+
     @Test
     void testAddVesselToFleet() {
         when(vesselRepository.findByMmsi(123456789L)).thenReturn(Optional.of(vessel));
@@ -84,7 +143,6 @@ class VesselServiceTest {
     @Test
     void testRemoveVesselFromFleet() {
         user.addVesselToFleet(vessel);
-        when(vesselRepository.findByMmsi(123456789L)).thenReturn(Optional.of(vessel));
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
 
         boolean result = vesselService.removeVesselFromFleet(123456789L, 1L);
@@ -95,19 +153,67 @@ class VesselServiceTest {
     }
 
     @Test
-    void testIsVesselInUserFleet() {
-        user.addVesselToFleet(vessel);
+    void testAddVesselToFleet_writesAVesselOnlyKnownToTheLiveStateFirst() {
+        liveVesselStore.addIfAbsent(vessel); //just seen on the feed, not flushed yet
+        when(vesselRepository.findByMmsi(123456789L)).thenReturn(Optional.empty(), Optional.of(vessel));
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
 
+        assertTrue(vesselService.addVesselToFleet(123456789L, 1L));
+
+        verify(vesselJdbcRepository).upsertPositions(argThat(vessels -> vessels.size() == 1
+                && vessels.get(0).getMmsi().equals(123456789L)));
+        assertTrue(user.hasVesselInFleet(123456789L));
+        assertFalse(vesselService.addVesselToFleet(555L, 1L)); //unknown everywhere
+    }
+
+    @Test
+    void testIsVesselInUserFleet() {
+        when(userRepository.findFleetMmsisByUserId(1L)).thenReturn(List.of(123456789L));
+
         boolean result = vesselService.isVesselInUserFleet(123456789L, 1L);
 
         assertTrue(result);
+        assertFalse(vesselService.isVesselInUserFleet(987654321L, 1L));
+        verify(userRepository, times(1)).findFleetMmsisByUserId(1L); //second check served from the cache
+    }
+
+    @Test
+    void testFleetMembershipFollowsAddAndRemove() {
+        when(userRepository.findFleetMmsisByUserId(1L)).thenReturn(List.of());
+        when(vesselRepository.findByMmsi(123456789L)).thenReturn(Optional.of(vessel));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        assertFalse(vesselService.getFleetMembership(1L).contains(123456789L));
+
+        vesselService.addVesselToFleet(123456789L, 1L);
+        assertTrue(vesselService.getFleetMembership(1L).contains(123456789L));
+
+        vesselService.removeVesselFromFleet(123456789L, 1L);
+        assertFalse(vesselService.getFleetMembership(1L).contains(123456789L));
+        verify(userRepository, times(1)).findFleetMmsisByUserId(1L);
+    }
+
+    @Test
+    void testSearchVesselsFollowsAdminEditsAndNewMmsis() {
+        liveVesselStore.loadAll(List.of(vessel));
+        vesselSearchIndex.rebuild(List.of(vessel));
+        assertEquals(List.of(vessel.getMmsi()), vesselService.searchVessels("test ves").stream().map(Vessel::getMmsi).toList());
+
+        Vessel renamed = vessel.copy();
+        renamed.setName("Blue Star");
+        vesselService.updateVesselStaticData(renamed);
+        assertTrue(vesselService.searchVessels("test").isEmpty());
+        assertEquals(1, vesselService.searchVessels("star").size());
+
+        vesselService.updateVesselPositions(
+                List.of(new AisData(987654321L, 0, 0, 5.0, 180.0, 180, 24.0, 38.0, 1005L)),
+                mmsi -> new Vessel(mmsi, "Unknown Vessel Type"));
+        assertEquals(987654321L, vesselService.searchVessels("98765").get(0).getMmsi());
     }
 
     @Test
     void testGetVesselTrack() {
         vessel.setTimestamp(System.currentTimeMillis() / 1000L);
-        when(vesselRepository.findByMmsi(123456789L)).thenReturn(Optional.of(vessel));
+        liveVesselStore.loadAll(List.of(vessel));
         when(positionHistoryRepository.findByMmsiAndTimestampAfter(anyLong(), anyLong()))
                 .thenReturn(List.of(new VesselPositionHistory()));
 
@@ -115,4 +221,144 @@ class VesselServiceTest {
 
         assertFalse(result.isEmpty());
     }
+
+    @Test
+    void testUpdateVesselPositions() {
+        liveVesselStore.loadAll(List.of(vessel));
+
+        List<AisData> batch = List.of(
+                new AisData(123456789L, 0, 0, 10.0, 90.0, 90, 23.5, 37.5, 1000L),
+                new AisData(123456789L, 0, 0, 11.0, 95.0, 95, 23.6, 37.6, 1010L),
+                new AisData(987654321L, 0, 0, 5.0, 180.0, 180, 24.0, 38.0, 1005L));
+
+        Map<Long, Vessel> result = vesselService.updateVesselPositions(batch, mmsi -> new Vessel(mmsi, "Unknown Vessel Type"));
+
+        assertEquals(2, result.size());
+        assertEquals(37.6, result.get(123456789L).getLatitude());
+        assertEquals(95.0, result.get(123456789L).getCourseOverGround());
+        assertEquals(1010L, result.get(123456789L).getTimestamp());
+        assertEquals("Unknown Vessel Type", result.get(987654321L).getVesselType());
+        verify(historyWriter, times(1)).append(argThat(history -> history.size() == 3));
+        verifyNoInteractions(vesselRepository, positionHistoryRepository);
+    }
+
+    @Test
+    void testUpdateVesselPositionsIgnoresStaleReports() {
+        liveVesselStore.loadAll(List.of(vessel));
+        List<AisData> outOfOrder = List.of(
+                new AisData(123456789L, 0, 0, 11.0, 95.0, 95, 23.6, 37.6, 1010L),
+                new AisData(123456789L, 0, 0, 10.0, 90.0, 90, 23.5, 37.5, 1000L));
+
+        vesselService.updateVesselPositions(outOfOrder, mmsi -> new Vessel(mmsi, "Unknown Vessel Type"));
+
+        Vessel current = vesselService.getVesselByMmsi(123456789L).orElseThrow();
+        assertEquals(37.6, current.getLatitude());
+        assertEquals(1010L, current.getTimestamp());
+    }
+
+    @Test
+    void testFlushLiveStateWritesOnlyChangedVessels() {
+        liveVesselStore.loadAll(List.of(vessel));
+        vesselService.updateVesselPositions(
+                List.of(new AisData(123456789L, 0, 0, 10.0, 90.0, 90, 23.5, 37.5, 1000L)),
+                mmsi -> new Vessel(mmsi, "Unknown Vessel Type"));
+
+        vesselService.flushLiveState();
+        vesselService.flushLiveState(); //nothing changed in between
+
+        verify(vesselJdbcRepository, times(1)).upsertPositions(argThat(vessels ->
+                vessels.size() == 1 && vessels.get(0).getLatitude() == 37.5));
+    }
+
+    @Test
+    void testGetVesselsInAreaFollowsPositionUpdates() {
+        liveVesselStore.loadAll(List.of(vessel));
+        vesselService.updateVesselPositions(
+                List.of(new AisData(123456789L, 0, 0, 10.0, 90.0, 90, 23.5, 37.5, 1000L)),
+                mmsi -> new Vessel(mmsi, "Unknown Vessel Type"));
+
+        //x = longitude, y = latitude, corners in any order
+        assertEquals(1, vesselService.getVesselsInArea(24.0, 38.0, 23.0, 37.0).size());
+
+        vesselService.updateVesselPositions(
+                List.of(new AisData(123456789L, 0, 0, 10.0, 90.0, 90, 25.5, 39.5, 1010L)),
+                mmsi -> new Vessel(mmsi, "Unknown Vessel Type"));
+
+        assertTrue(vesselService.getVesselsInArea(23.0, 37.0, 24.0, 38.0).isEmpty());
+        assertEquals(123456789L, vesselService.getVesselsInArea(25.0, 39.0, 26.0, 40.0).get(0).getMmsi());
+    }
+
+    @Test
+    void testGetVesselChangesInAreaReturnsOnlyMovesSinceVersion() {
+        Vessel other = new Vessel(5L, "Cargo");
+        other.setLatitude(37.2);
+        other.setLongitude(23.2);
+        vessel.setLatitude(37.5);
+        vessel.setLongitude(23.5);
+        liveVesselStore.loadAll(List.of(vessel, other));
+
+        LiveVesselStore.AreaDelta first = vesselService.getVesselChangesInArea(23.0, 37.0, 24.0, 38.0, null);
+        assertTrue(first.full());
+        assertEquals(2, first.upserted().size());
+
+        //Nothing moved
+        LiveVesselStore.AreaDelta idle = vesselService.getVesselChangesInArea(23.0, 37.0, 24.0, 38.0, first.version());
+        assertFalse(idle.full());
+        assertTrue(idle.upserted().isEmpty() && idle.removed().isEmpty());
+
+        //One vessel moves inside the area, the other leaves it
+        vesselService.updateVesselPositions(List.of(
+                        new AisData(123456789L, 0, 0, 10.0, 90.0, 90, 23.6, 37.6, 1000L),
+                        new AisData(5L, 0, 0, 10.0, 90.0, 90, 30.0, 40.0, 1000L)),
+                mmsi -> new Vessel(mmsi, "Unknown Vessel Type"));
+
+        LiveVesselStore.AreaDelta delta = vesselService.getVesselChangesInArea(23.0, 37.0, 24.0, 38.0, idle.version());
+        assertFalse(delta.full());
+        assertEquals(List.of(123456789L), delta.upserted().stream().map(Vessel::getMmsi).toList());
+        assertEquals(List.of(5L), delta.removed());
+        assertTrue(delta.version() > idle.version());
+
+        //A version this store never handed out: full answer
+        assertTrue(vesselService.getVesselChangesInArea(23.0, 37.0, 24.0, 38.0, delta.version() + 100).full());
+    }
+
+    @Test
+    void testGetVesselTileClustersBelowTheVesselZoom() {
+        ReflectionTestUtils.setField(vesselService, "vesselMinZoom", 10);
+        vessel.setLatitude(37.9);
+        vessel.setLongitude(23.6);
+        Vessel other = new Vessel(5L, "Cargo");
+        liveVesselStore.loadAll(List.of(vessel, other));
+        vesselService.updateVesselPositions(
+                List.of(new AisData(5L, 0, 0, 10.0, 90.0, 90, 23.61, 37.91, 1000L)),
+                mmsi -> new Vessel(mmsi, "Unknown Vessel Type"));
+
+        VesselService.VesselTile world = vesselService.getVesselTile(0, 0, 0);
+        assertTrue(world.clustered());
+        assertEquals(1, world.clusters().size());
+        assertEquals(2, world.clusters().get(0).count());
+
+        //Zoom 10 tile containing Piraeus: individual vessels
+        int x = (int) Math.floor((23.6 + 180) / 360 * 1024);
+        double latRad = Math.toRadians(37.9);
+        int y = (int) Math.floor((1 - Math.log(Math.tan(latRad) + 1 / Math.cos(latRad)) / Math.PI) / 2 * 1024);
+        VesselService.VesselTile harbour = vesselService.getVesselTile(10, x, y);
+        assertFalse(harbour.clustered());
+        assertEquals(2, harbour.vessels().size());
+
+        assertThrows(IllegalArgumentException.class, () -> vesselService.getVesselTile(1, 2, 0));
+    }
+
+    @Test
+    void testCleanupOldPositionHistoryDropsPartitions() {
+        vessel.setTimestamp(100_000L);
+        liveVesselStore.loadAll(List.of(vessel));
+        when(historyPartitions.isEnabled()).thenReturn(true);
+
+        vesselService.cleanupOldPositionHistory();
+
+        //12 hours before the newest vessel timestamp
+        verify(historyPartitions).dropPartitionsBefore(100_000L - 12 * 3600L);
+        verify(positionHistoryRepository, never()).deleteOldPositions(anyLong());
+    }
 }
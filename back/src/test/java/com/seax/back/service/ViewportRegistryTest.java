@@ -0,0 +1,64 @@
+package com.seax.back.service;
+
+import com.seax.back.model.Viewport;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ViewportRegistryTest {
+
+    private final ViewportRegistry registry = new ViewportRegistry();
+
+    @Test
+    void sessionsContaining_shouldOnlyReturnSessionsLookingAtThePosition() {
+        registry.update("aegean", new Viewport(35.0, 22.0, 41.0, 28.0));
+        registry.update("piraeus", new Viewport(37.8, 23.5, 38.0, 23.8));
+        registry.update("world", new Viewport(-85.0, -180.0, 85.0, 180.0));
+
+        List<String> sessions = registry.sessionsContaining(37.9, 23.6);
+
+        assertEquals(3, sessions.size());
+        assertTrue(sessions.containsAll(List.of("aegean", "piraeus", "world")));
+        assertEquals(List.of("world"), registry.sessionsContaining(48.0, -5.0));
+        assertEquals(3, registry.size());
+    }
+
+    @Test
+    void update_shouldMoveTheViewport_andRemoveShouldForgetTheSession() {
+        registry.update("s1", new Viewport(35.0, 22.0, 41.0, 28.0));
+        registry.update("s1", new Viewport(47.0, -6.0, 49.0, -3.0));
+
+        assertTrue(registry.sessionsContaining(37.9, 23.6).isEmpty());
+        assertEquals(List.of("s1"), registry.sessionsContaining(48.0, -5.0));
+
+        registry.remove("s1");
+        assertTrue(registry.sessionsContaining(48.0, -5.0).isEmpty());
+        assertTrue(registry.isEmpty());
+    }
+
+    @Test
+    void update_shouldSplitViewportsCrossingTheAntimeridian() {
+        registry.update("pacific", new Viewport(-20.0, 170.0, -10.0, -170.0));
+        registry.update("panned", new Viewport(50.0, 170.0, 60.0, 190.0)); //Leaflet past +180
+
+        assertEquals(List.of("pacific"), registry.sessionsContaining(-15.0, 175.0));
+        assertEquals(List.of("pacific"), registry.sessionsContaining(-15.0, -175.0));
+        assertTrue(registry.sessionsContaining(-15.0, 0.0).isEmpty());
+        assertEquals(List.of("panned"), registry.sessionsContaining(55.0, -175.0));
+        assertEquals(2, registry.size());
+
+        //Back to one side: the second half is dropped
+        registry.update("pacific", new Viewport(-20.0, 150.0, -10.0, 160.0));
+        assertTrue(registry.sessionsContaining(-15.0, -175.0).isEmpty());
+    }
+
+    @Test
+    void update_shouldRejectInvalidBounds() {
+        assertThrows(IllegalArgumentException.class,
+                () -> registry.update("s1", new Viewport(Double.NaN, 0.0, 1.0, 1.0)));
+        assertThrows(IllegalArgumentException.class, () -> registry.update(null, new Viewport()));
+        assertTrue(registry.isEmpty());
+    }
+}
@@ -10,8 +10,10 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.Collections;
 import java.util.List;
@@ -37,6 +39,15 @@ class ViolationServiceTest {
     @Mock
     private SimpMessagingTemplate messagingTemplate;
 
+    @Spy
+    private ZoneRegistry zoneRegistry = new ZoneRegistry();
+
+    @Spy
+    private ViolationTracker violationTracker = new ViolationTracker();
+
+    @Mock
+    private ClusterRelay clusterRelay;
+
     @InjectMocks
     private ViolationService violationService;
 
@@ -50,6 +61,7 @@ class ViolationServiceTest {
         user.setId(1L);
 
         zone = new Zone();
+        zone.setId(1L);
         zone.setUser(user);
         zone.setStartPoint(new Point(0, 0));
         zone.setEndPoint(new Point(10, 10));
@@ -88,6 +100,8 @@ class ViolationServiceTest {
         // Expect 3 violations: speed, type, and status
         verify(violationRepository, times(3)).save(any(Violation.class));
         verify(messagingTemplate, times(3)).convertAndSend(eq("/topic/violations/1"), any(Violation.class));
+        //Also relayed to the other nodes (no-op unless cluster fan-out is on)
+        verify(clusterRelay, times(3)).relay(eq("/topic/violations/1"), any(Violation.class));
     }
 
     @Test
@@ -102,4 +116,58 @@ class ViolationServiceTest {
         verify(messagingTemplate, never()).convertAndSend(anyString(), any(Object.class));
     }
 
+    @Test
+    void checkAllZonesAndVessels_shouldNotRepeatViolations_whileVesselStaysInBreach() {
+        when(zoneRepository.findAll()).thenReturn(Collections.singletonList(zone));
+        when(vesselRepository.findVesselsInBoundingBox(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(Collections.singletonList(vesselInZoneWithViolation));
+
+        violationService.checkAllZonesAndVessels();
+        violationService.checkAllZonesAndVessels();
+        violationService.checkAllZonesAndVessels();
+
+        // Still 3: only the start of each breach is reported
+        verify(violationRepository, times(3)).save(any(Violation.class));
+        verify(messagingTemplate, times(3)).convertAndSend(eq("/topic/violations/1"), any(Violation.class));
+    }
+
+    @Test
+    void checkAllZonesAndVessels_shouldSendClear_whenVesselLeavesZone() {
+        when(zoneRepository.findAll()).thenReturn(Collections.singletonList(zone));
+        when(vesselRepository.findVesselsInBoundingBox(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(Collections.singletonList(vesselInZoneWithViolation))
+                .thenReturn(Collections.emptyList());
+
+        violationService.checkAllZonesAndVessels();
+        violationService.checkAllZonesAndVessels();
+
+        // 3 starts (saved) + 3 clears (message only)
+        verify(violationRepository, times(3)).save(any(Violation.class));
+        ArgumentCaptor<Violation> captor = ArgumentCaptor.forClass(Violation.class);
+        verify(messagingTemplate, times(6)).convertAndSend(eq("/topic/violations/1"), captor.capture());
+        assertEquals(3, captor.getAllValues().stream().filter(v -> v.getDescription().startsWith("Cleared: ")).count());
+        assertEquals(0, violationTracker.openCount());
+    }
+
+    @Test
+    void checkPosition_shouldCreateViolations_fromZoneRegistry_whenIncremental() {
+        ReflectionTestUtils.setField(violationService, "incremental", true);
+        zoneRegistry.reload(List.of(zone));
+
+        violationService.checkPosition(vesselInZoneWithViolation);
+
+        verify(violationRepository, times(3)).save(any(Violation.class));
+        verify(messagingTemplate, times(3)).convertAndSend(eq("/topic/violations/1"), any(Violation.class));
+        verifyNoInteractions(zoneRepository, vesselRepository);
+    }
+
+    @Test
+    void checkAllZonesAndVessels_shouldSkipSweep_whenIncremental() {
+        ReflectionTestUtils.setField(violationService, "incremental", true);
+
+        violationService.checkAllZonesAndVessels();
+
+        verifyNoInteractions(zoneRepository, vesselRepository, violationRepository);
+    }
+
 }
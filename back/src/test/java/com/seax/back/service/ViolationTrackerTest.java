@@ -0,0 +1,72 @@
+package com.seax.back.service;
+
+import com.seax.back.model.Violation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ViolationTrackerTest {
+
+    private ViolationTracker tracker;
+    private ViolationTracker.Key speedKey;
+
+    @BeforeEach
+    void setUp() {
+        tracker = new ViolationTracker();
+        ReflectionTestUtils.setField(tracker, "renotifyIntervalMs", 1000L);
+        speedKey = new ViolationTracker.Key(12345L, 1L, ViolationTracker.Rule.SPEED_MAX);
+    }
+
+    @Test
+    void observe_shouldReportStartOnce_thenRenotifyAfterInterval() {
+        assertEquals(ViolationTracker.Transition.STARTED, tracker.observe(speedKey, true, 0));
+        assertEquals(ViolationTracker.Transition.NONE, tracker.observe(speedKey, true, 500));
+        assertEquals(ViolationTracker.Transition.RENOTIFY, tracker.observe(speedKey, true, 1000));
+        assertEquals(ViolationTracker.Transition.NONE, tracker.observe(speedKey, true, 1500));
+        assertEquals(ViolationTracker.Transition.RENOTIFY, tracker.observe(speedKey, true, 2000));
+    }
+
+    @Test
+    void observe_shouldNeverRenotify_whenIntervalIsZero() {
+        ReflectionTestUtils.setField(tracker, "renotifyIntervalMs", 0L);
+
+        assertEquals(ViolationTracker.Transition.STARTED, tracker.observe(speedKey, true, 0));
+        assertEquals(ViolationTracker.Transition.NONE, tracker.observe(speedKey, true, 10_000_000));
+    }
+
+    @Test
+    void observe_shouldReportClear_andStartAgainAfterClose() {
+        Violation violation = new Violation();
+        tracker.observe(speedKey, true, 0);
+        tracker.attach(speedKey, violation);
+
+        assertEquals(ViolationTracker.Transition.CLEARED, tracker.observe(speedKey, false, 100));
+        assertSame(violation, tracker.close(speedKey));
+        assertEquals(ViolationTracker.Transition.NONE, tracker.observe(speedKey, false, 200));
+        assertEquals(ViolationTracker.Transition.STARTED, tracker.observe(speedKey, true, 300));
+    }
+
+    @Test
+    void clearOutside_shouldCloseOnlyViolationsOfOtherZones() {
+        ViolationTracker.Key otherZone = new ViolationTracker.Key(12345L, 2L, ViolationTracker.Rule.TYPE);
+        Violation inZone = new Violation();
+        Violation left = new Violation();
+        tracker.observe(speedKey, true, 0);
+        tracker.attach(speedKey, inZone);
+        tracker.observe(otherZone, true, 0);
+        tracker.attach(otherZone, left);
+
+        List<Violation> cleared = tracker.clearOutside(12345L, Set.of(1L));
+
+        assertEquals(List.of(left), cleared);
+        assertEquals(1, tracker.openCount());
+        assertEquals(List.of(inZone), tracker.clearAllOutside(Map.of()));
+        assertEquals(0, tracker.openCount());
+    }
+}
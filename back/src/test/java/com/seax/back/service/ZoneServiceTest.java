@@ -10,6 +10,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.Optional;
@@ -28,6 +29,9 @@ class ZoneServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Spy
+    private ZoneRegistry zoneRegistry = new ZoneRegistry();
+
     @InjectMocks
     private ZoneService zoneService;
 
@@ -62,6 +66,8 @@ class ZoneServiceTest {
         assertNotNull(result);
         assertEquals(user, result.getUser());
         verify(zoneRepository).save(zone);
+        //No transaction in the test, so the registry is updated right away
+        assertEquals(1, zoneRegistry.zonesContaining(20, 30).size());
     }
 
     @Test
@@ -106,5 +112,6 @@ class ZoneServiceTest {
 
         assertTrue(result);
         verify(zoneRepository).delete(zone);
+        verify(zoneRegistry).remove(1L);
     }
 }
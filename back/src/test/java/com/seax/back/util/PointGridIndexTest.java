@@ -0,0 +1,69 @@
+package com.seax.back.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PointGridIndexTest {
+
+    @Test
+    void candidates_shouldReturnPointsInOverlappedCells() {
+        PointGridIndex<Long> index = new PointGridIndex<>(0.1);
+        index.put(1L, 48.05, -4.55);
+        index.put(2L, 48.38, -4.49);
+        index.put(3L, 10.0, 10.0);
+
+        Set<Long> result = new HashSet<>();
+        index.candidates(48.4, -4.4, 48.0, -4.6, result::add); //corners in any order
+
+        assertEquals(Set.of(1L, 2L), result);
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void put_shouldMovePoint_andRemoveShouldForgetIt() {
+        PointGridIndex<Long> index = new PointGridIndex<>(0.1);
+        index.put(1L, 48.05, -4.55);
+        index.put(1L, 40.05, 0.05);
+
+        Set<Long> oldArea = new HashSet<>();
+        index.candidates(48.0, -4.6, 48.1, -4.5, oldArea::add);
+        assertTrue(oldArea.isEmpty());
+        assertEquals(1, index.occupiedCells());
+
+        index.remove(1L);
+        Set<Long> newArea = new HashSet<>();
+        index.candidates(40.0, 0.0, 40.1, 0.1, newArea::add);
+        assertTrue(newArea.isEmpty());
+        assertEquals(0, index.size());
+        assertEquals(0, index.occupiedCells());
+    }
+
+    @Test
+    void candidates_shouldContainEveryPointInTheBox_forSmallAndWorldBoxes() {
+        PointGridIndex<Integer> index = new PointGridIndex<>(0.1);
+        Random random = new Random(42);
+        double[][] points = new double[5000][];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new double[]{random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180};
+            index.put(i, points[i][0], points[i][1]);
+        }
+
+        double[][] boxes = {{-10, -10, 10, 10}, {45, 5, 46, 6}, {-90, -180, 90, 180}};
+        for (double[] box : boxes) {
+            Set<Integer> candidates = new HashSet<>();
+            index.candidates(box[0], box[1], box[2], box[3], candidates::add);
+            for (int i = 0; i < points.length; i++) {
+                boolean inside = points[i][0] >= box[0] && points[i][0] <= box[2]
+                        && points[i][1] >= box[1] && points[i][1] <= box[3];
+                if (inside) {
+                    assertTrue(candidates.contains(i), "missing point " + i);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.seax.back.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PositionChangeLogTest {
+
+    @Test
+    void replay_shouldVisitChangesAfterTheVersion_inOrder() {
+        PositionChangeLog log = new PositionChangeLog(8);
+        log.record(1L, null, null);
+        long second = log.record(2L, 10.0, 20.0);
+        log.record(1L, 11.0, 21.0);
+
+        List<Long> keys = new ArrayList<>();
+        List<Double> previousLats = new ArrayList<>();
+        long reached = log.replay(1, (version, key, previousLat, previousLon) -> {
+            keys.add(key);
+            previousLats.add(previousLat);
+        });
+
+        assertEquals(2, second);
+        assertEquals(3, reached);
+        assertEquals(List.of(2L, 1L), keys);
+        assertEquals(List.of(10.0, 11.0), previousLats);
+        assertEquals(3, log.replay(3, (version, key, previousLat, previousLon) -> fail("nothing changed")));
+    }
+
+    @Test
+    void replay_shouldRefuseVersionsNoLongerInTheRing_fromTheFuture_andBeforeReset() {
+        PositionChangeLog log = new PositionChangeLog(5); //rounded up to 8
+        for (long key = 0; key < 20; key++) {
+            log.record(key, null, null);
+        }
+        assertEquals(8, log.capacity());
+        assertEquals(-1, log.replay(5, (version, key, previousLat, previousLon) -> { }));
+        assertEquals(20, log.replay(12, (version, key, previousLat, previousLon) -> { }));
+        assertEquals(-1, log.replay(21, (version, key, previousLat, previousLon) -> { }));
+
+        log.reset();
+        assertEquals(-1, log.replay(19, (version, key, previousLat, previousLon) -> { }));
+        assertEquals(20, log.replay(20, (version, key, previousLat, previousLon) -> { }));
+    }
+}
@@ -0,0 +1,75 @@
+package com.seax.back.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RectangleGridIndexTest {
+
+    @Test
+    void containing_shouldReturnEveryRectangleContainingThePoint() {
+        RectangleGridIndex<Long, String> index = new RectangleGridIndex<>(0.25);
+        index.put(1L, "brest", 48.0, -5.0, 48.5, -4.0);
+        index.put(2L, "iroise", 48.6, -5.5, 47.9, -4.5); //corners in any order
+        index.put(3L, "far", 10.0, 10.0, 11.0, 11.0);
+
+        List<String> result = index.containing(48.2, -4.7);
+
+        assertEquals(2, result.size());
+        assertTrue(result.containsAll(List.of("brest", "iroise")));
+        assertEquals(List.of("brest"), index.containing(48.5, -4.0)); //edges included
+        assertTrue(index.containing(0, 0).isEmpty());
+    }
+
+    @Test
+    void put_shouldMoveRectangle_andRemoveShouldForgetIt() {
+        RectangleGridIndex<Long, String> index = new RectangleGridIndex<>(0.25);
+        index.put(1L, "zone", 48.0, -5.0, 48.5, -4.0);
+        index.put(1L, "zone", 40.0, 0.0, 41.0, 1.0);
+
+        assertTrue(index.containing(48.2, -4.7).isEmpty());
+        assertEquals(List.of("zone"), index.containing(40.5, 0.5));
+        assertEquals(1, index.size());
+
+        assertEquals("zone", index.remove(1L));
+        assertTrue(index.containing(40.5, 0.5).isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void containing_shouldFindWideRectangles() {
+        RectangleGridIndex<Long, String> index = new RectangleGridIndex<>(0.25);
+        index.put(1L, "atlantic", -60.0, -80.0, 60.0, 0.0);
+
+        assertEquals(List.of("atlantic"), index.containing(45.0, -30.0));
+        assertTrue(index.containing(45.0, 10.0).isEmpty());
+    }
+
+    @Test
+    void containing_shouldMatchLinearScan_forRandomRectangles() {
+        RectangleGridIndex<Integer, double[]> index = new RectangleGridIndex<>(0.5);
+        Random random = new Random(42);
+        double[][] rects = new double[500][];
+        for (int i = 0; i < rects.length; i++) {
+            double lat = 40 + random.nextDouble() * 10;
+            double lon = -10 + random.nextDouble() * 10;
+            rects[i] = new double[]{lat, lon, lat + random.nextDouble() * 2, lon + random.nextDouble() * 2};
+            index.put(i, rects[i], rects[i][0], rects[i][1], rects[i][2], rects[i][3]);
+        }
+
+        for (int p = 0; p < 2000; p++) {
+            double lat = 39 + random.nextDouble() * 14;
+            double lon = -11 + random.nextDouble() * 14;
+            int expected = 0;
+            for (double[] r : rects) {
+                if (lat >= r[0] && lat <= r[2] && lon >= r[1] && lon <= r[3]) {
+                    expected++;
+                }
+            }
+            assertEquals(expected, index.containing(lat, lon).size());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.seax.back.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TileClusterIndexTest {
+
+    @Test
+    void clusters_shouldAggregateCountCentroidAndDominantType() {
+        TileClusterIndex index = new TileClusterIndex(4);
+        index.move(null, null, null, 37.90, 23.60, "Cargo");
+        index.move(null, null, null, 37.92, 23.62, "Cargo");
+        index.move(null, null, null, 37.94, 23.64, "Tanker");
+
+        //Zoom 0: one tile, all three points in one 32 px cell
+        List<TileClusterIndex.Cluster> world = index.clusters(0, 0, 0);
+        assertEquals(1, world.size());
+        TileClusterIndex.Cluster cluster = world.get(0);
+        assertEquals(3, cluster.count());
+        assertEquals(37.92, cluster.latitude(), 1e-9);
+        assertEquals(23.62, cluster.longitude(), 1e-9);
+        assertEquals("Cargo", cluster.dominantType());
+
+        //Zoom 1: the points are in the north-east tile (x = 1, y = 0)
+        assertEquals(3, index.clusters(1, 1, 0).get(0).count());
+        assertTrue(index.clusters(1, 0, 0).isEmpty());
+    }
+
+    @Test
+    void move_shouldFollowThePoint_andRemoveEmptyClusters() {
+        TileClusterIndex index = new TileClusterIndex(4);
+        index.move(null, null, null, 37.9, 23.6, "Cargo");
+        index.move(37.9, 23.6, "Cargo", -33.9, 151.2, "Tanker"); //Piraeus -> Sydney, type edited too
+
+        assertTrue(index.clusters(1, 1, 0).isEmpty());
+        TileClusterIndex.Cluster sydney = index.clusters(1, 1, 1).get(0);
+        assertEquals(1, sydney.count());
+        assertEquals("Tanker", sydney.dominantType());
+
+        index.move(-33.9, 151.2, "Tanker", null, null, "Tanker"); //position lost
+        assertTrue(index.clusters(0, 0, 0).isEmpty());
+    }
+
+    @Test
+    void tileBounds_shouldMatchWebMercatorTiles() {
+        double[] world = TileClusterIndex.tileBounds(0, 0, 0);
+        assertEquals(-85.0511, world[0], 1e-4);
+        assertEquals(85.0511, world[1], 1e-4);
+        assertEquals(-180, world[2], 1e-9);
+        assertEquals(180, world[3], 1e-9);
+
+        double[] northEast = TileClusterIndex.tileBounds(1, 1, 0);
+        assertEquals(0, northEast[0], 1e-9);
+        assertEquals(0, northEast[2], 1e-9);
+    }
+}
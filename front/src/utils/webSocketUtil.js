@@ -21,7 +21,9 @@ export function connectWebSocket(onAisDataReceived) {
                 isReconnecting = false;
                 stompClient.subscribe('/topic/ais-data', (msg) => {
                     try {
-                        onAisDataReceived(JSON.parse(msg.body));
+                        // One frame per broadcast window: an array of the latest reports
+                        const payload = JSON.parse(msg.body);
+                        (Array.isArray(payload) ? payload : [payload]).forEach(onAisDataReceived);
                     } catch {
                         console.error('❌ Invalid message format:', msg.body);
                     }